@@ -0,0 +1,104 @@
+package core;
+
+import processing.IProcessingApp;
+import processing.core.PApplet;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Janela única com todos os gráficos das estatísticas do jogo. Em vez de uma janela (e uma thread de desenho) por
+ * gráfico, os gráficos são painéis desenhados pela mesma janela, numa grelha que se ajusta ao número de painéis.
+ * Podem ser acrescentados painéis a qualquer momento com addPanel, mesmo a partir de outra thread.
+ */
+public class Dashboard implements IProcessingApp {
+    // os gráficos só recebem dados novos uma vez por segundo, não é preciso desenhar a 60 frames por segundo
+    private static final int FRAME_RATE = 20;
+    private static final int BACKGROUND_COLOR = 200;
+    private static final float GAP = 4;
+
+    private final List<DashboardPanel> panels = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void setup(PApplet p) {
+        p.frameRate(FRAME_RATE);
+        addPanel(new GraphManager(0));
+        addPanel(new GraphManager(1));
+        addPanel(new GraphManager(2));
+        addPanel(new GraphManager(3));
+        addPanel(new GraphManager(4));
+    }
+
+    /**
+     * Acrescenta um painel ao Dashboard. A grelha é refeita no próximo frame.
+     * @param panel painel a acrescentar
+     */
+    public void addPanel(DashboardPanel panel) {
+        panels.add(panel);
+    }
+
+    public void removePanel(DashboardPanel panel) {
+        panels.remove(panel);
+    }
+
+    public List<DashboardPanel> getPanels() {
+        return panels;
+    }
+
+    /**
+     * Limpa os dados de todos os painéis.
+     */
+    public void clear() {
+        for (DashboardPanel panel : panels) {
+            panel.clear();
+        }
+    }
+
+    /**
+     * Atualiza e desenha todos os painéis numa grelha com o menor número de colunas que a deixa aproximadamente
+     * quadrada (2x2 para 4 painéis, 3x2 para 5 ou 6, ...).
+     * @param p PApplet
+     * @param dt tempo decorrido desde o último frame
+     */
+    @Override
+    public void draw(PApplet p, float dt) {
+        p.background(BACKGROUND_COLOR);
+        int count = panels.size();
+        if (count == 0) {
+            return;
+        }
+        int columns = (int) Math.ceil(Math.sqrt(count));
+        int rows = (int) Math.ceil(count / (double) columns);
+        float cellWidth = (p.width - GAP * (columns - 1)) / columns;
+        float cellHeight = (p.height - GAP * (rows - 1)) / rows;
+
+        int i = 0;
+        for (DashboardPanel panel : panels) {
+            panel.update(dt);
+            float x = (i % columns) * (cellWidth + GAP);
+            float y = (i / columns) * (cellHeight + GAP);
+
+            p.pushMatrix();
+            p.pushStyle();
+            // o clip é dado antes da translação porque no renderer OpenGL o clip ignora a matriz
+            p.clip(x, y, cellWidth, cellHeight);
+            p.translate(x, y);
+            panel.draw(p, cellWidth, cellHeight);
+            p.noClip();
+            p.popStyle();
+            p.popMatrix();
+            i++;
+        }
+    }
+
+    @Override
+    public void mousePressed(PApplet p) {}
+    @Override
+    public void keyPressed(PApplet p) {}
+    @Override
+    public void keyReleased(PApplet p) {}
+    @Override
+    public void mouseReleased(PApplet p) {}
+    @Override
+    public void mouseDragged(PApplet p) {}
+}
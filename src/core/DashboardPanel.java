@@ -0,0 +1,33 @@
+package core;
+
+import processing.core.PApplet;
+
+/**
+ * Painel do Dashboard. Cada painel recolhe os seus próprios dados e desenha-se numa área retangular da janela do
+ * Dashboard, com a origem no canto superior esquerdo do painel.
+ */
+public interface DashboardPanel {
+    /**
+     * @return título do painel
+     */
+    String getTitle();
+
+    /**
+     * Chamado em cada frame do Dashboard, antes de desenhar.
+     * @param deltaTime tempo decorrido desde o último frame
+     */
+    void update(float deltaTime);
+
+    /**
+     * Desenha o painel. A matriz já está deslocada para o canto do painel e o desenho fica cortado à sua área.
+     * @param p PApplet da janela do Dashboard
+     * @param width largura do painel
+     * @param height altura do painel
+     */
+    void draw(PApplet p, float width, float height);
+
+    /**
+     * Limpa os dados recolhidos até agora.
+     */
+    void clear();
+}
@@ -1,18 +1,29 @@
 package core;
 
+import model.entity.EntityRegistry;
 import model.entity.animal.Blob;
 import model.entity.animal.BlobPredator;
 import model.entity.animal.BlobVillager;
 import model.entity.plant.LeafTree;
-import model.entity.resource.Fruit;
+import model.entity.resource.ResourceStore;
+import model.factory.EntityFactory;
+import model.genetics.Trait;
+import model.genetics.TraitStats;
+import model.lineage.LineageStore;
+import model.world.WeatherLayer;
 import processing.core.PApplet;
 import processing.core.PVector;
-import tools.LSystem;
-import tools.ParticleSystem;
+import tools.GlyphFont;
+import tools.MetricsChannel;
+import tools.MoverArrays;
+import tools.MoverKernels;
+import tools.ParticleEmitter;
+import tools.ParticleEngine;
+import tools.ParticleRenderer;
+import tools.ParticleRing;
 import tools.SubPlot;
+import tools.TextLabel;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -21,15 +32,34 @@ import java.util.List;
  */
 public class Game {
     private final InteractionManager IM;
-    private ParticleSystem playerSystem;
     private final GameManager GM;
+    private final LineageStore lineage;
     private Blob playerBlob;
 
-    private final List<BlobVillager> blobVillagers;
-    private final List<BlobPredator> blobPredators;
-    private final List<Fruit>fruits;
-    private final List<ParticleSystem> activeParticleSystems = new ArrayList<>();
-
+    private final EntityRegistry<BlobVillager> blobVillagers;
+    private final EntityRegistry<BlobPredator> blobPredators;
+    private final ResourceStore fruits;
+    private final PVector fruitTarget = new PVector();
+    private final PVector totalForce = new PVector();
+    private final MoverArrays villagerMovers = new MoverArrays();
+    private final MoverArrays predatorMovers = new MoverArrays();
+    private int[] neighbours = new int[16];
+    private final ParticleRenderer particleRenderer = new ParticleRenderer();
+    private final ParticleEngine particles;
+    private final ParticleEmitter playerTrail;
+    private final WeatherLayer weather;
+    private long hora = 0;
+    private final GlyphFont hudFont;
+    private final MetricsChannel metrics;
+    private final TraitStats villagerStats;
+    private final TraitStats predatorStats;
+    private final float[] metricSample = new float[Metric.COUNT];
+    private final TextLabel dayLabel = new TextLabel("Dia: ", "");
+    private final TextLabel hourLabel = new TextLabel("Horas: ", "");
+    private String seasonLabel;
+    private String seasonLabelFor;
+
+    private long tick = 0;
     private long t0;
     private long t1;
     private long dayCycle = 15000;
@@ -45,18 +75,31 @@ public class Game {
     boolean secondFamilyTree = false;
 
     int numberOfFruits = 0;
-    int PARTICLE_MASS = 1;
     int PARTICLE_RADIUS = 5;
+    private static final int TRAIL_CAPACITY = 2048;
+    private static final float TRAIL_RATE = 1500;
 
 
-    public Game(List<BlobVillager> blobVillagers, List<BlobPredator> blobPredators,List<Fruit>fruits,
-                InteractionManager IM, GameManager GM) {
+    public Game(EntityRegistry<BlobVillager> blobVillagers, EntityRegistry<BlobPredator> blobPredators,
+                ResourceStore fruits, InteractionManager IM, GameManager GM, LineageStore lineage,
+                ParticleEngine particles, WeatherLayer weather, GlyphFont hudFont, MetricsChannel metrics,
+                TraitStats villagerStats, TraitStats predatorStats) {
         this.blobVillagers = blobVillagers;
         this.blobPredators = blobPredators;
         this.fruits=fruits;
         this.t0 = System.currentTimeMillis();
         this.IM = IM;
         this.GM=GM;
+        this.lineage = lineage;
+        this.particles = particles;
+        this.weather = weather;
+        this.hudFont = hudFont;
+        this.metrics = metrics;
+        this.villagerStats = villagerStats;
+        this.predatorStats = predatorStats;
+
+        ParticleRing trailRing = particles.createRing(TRAIL_CAPACITY, 1.0f, PARTICLE_RADIUS, 0x80FFD700);
+        playerTrail = particles.createEmitter(trailRing, TRAIL_RATE);
     }
 
     /**
@@ -65,54 +108,35 @@ public class Game {
      * estação do ano.
      * Durante a noite, os blobs são movimentados para as suas casas e recuperam a sua stamina, quando de dia, os blobs
      * movimentam-se à procura de comida ou a fugir de predadores (caso sejam blobVillagers).
-     * Dependendo do número do dia atual, a geração de árvores é alterada, assim como a quantidade de frutas que são
-     * geradas após o primeiro dia.
+     * A cada dia que passa as árvores envelhecem (cada uma cresce e morre de acordo com a sua idade) e, dependendo
+     * do número do dia atual, é alterada a quantidade de frutas que são geradas após o primeiro dia.
      * Imprementámos um sistema de pausa que permite ao jogador pausar o jogo e continuar a partir do ponto onde parou.
      *
-     * @param lSys systema de Lindenmayer que controla a geração de árvores
      * @param p PApplet
      * @param trees lista de árvores
-     * @param fruits lista de frutas
+     * @param fruits armazém das frutas do mapa
      * @param plt subplot
      * @param dt tempo decorrido desde o último frame
      * @param maxNumberOfFruits número máximo de frutas que podem existir no mapa após o primeiro dia
      * @param pauseGame boolean que indica se o jogo está pausado
      * @param playerBlob blob que representa o jogador
      */
-    public void update(LSystem lSys, PApplet p, List<LeafTree> trees, List<Fruit> fruits, SubPlot plt, float dt,
+    public void update(PApplet p, List<LeafTree> trees, ResourceStore fruits, SubPlot plt, float dt,
                        int maxNumberOfFruits, boolean pauseGame, Blob playerBlob) {
         this.playerBlob = playerBlob;
-        boolean foundPlayer = false;
-
-        for(BlobVillager blobVillager : blobVillagers){
-            if (blobVillager == playerBlob) {
-                foundPlayer = true;
-                break;
-            }
-        }
-        for(BlobPredator blobPredator : blobPredators){
-            if (blobPredator == playerBlob) {
-                foundPlayer = true;
-                break;
-            }
-        }
 
-        if(!foundPlayer){
+        // o contains dos registos é O(1): compara a entidade guardada no id do blob com o próprio blob
+        if(!blobVillagers.contains(playerBlob) && !blobPredators.contains(playerBlob)){
             this.playerBlob = null;
         }
 
-        if(playerBlob != null){
-            createPlayerParticleEffects(p);
-        } else {
-            activeParticleSystems.remove(playerSystem);
-        }
+        updatePlayerTrail();
 
         p.pushStyle();
-        p.textSize(19);
-        p.text("Dia: " + (dayCycleCounter + 1), 15, 30);
-        p.text("Estação: " + season, 15, 50);
 
         if (!pauseGame) {
+            tick++;
+            lineage.setCurrentTick(tick);
             t1 = System.currentTimeMillis();
 
             if (gameWasPaused) {
@@ -120,8 +144,7 @@ public class Game {
                 gameWasPaused = false;
             }
 
-            long hora = (t1 - t0) / 1000;
-            p.text("Horas: " + hora, 15, 70);
+            hora = (t1 - t0) / 1000;
             p.stroke(255);
             p.popStyle();
 
@@ -150,41 +173,26 @@ public class Game {
                 }
                 dayCycleCounter++;
 
-                if (dayCycleCounter <= 3) {
-                    lSys.nextGeneration();
-                    for (LeafTree tree : trees) {
-                        tree.scaling(1.3f);
-                    }
-                } else if(dayCycleCounter >= 7 && dayCycleCounter <= 10) {
-                    lSys.previousGeneration(trees);
-                    for (LeafTree tree : trees) {
-                        tree.scaling(1/1.3f);
-                    }
-                } else if(dayCycleCounter >= 12 && dayCycleCounter <= 14){
-                    if(!secondFamilyTree){
-                        GM.initializeFruitTree(p);
-                        GM.initializeFruitTree(p);
-                        GM.initializeFruitTree(p);
-                        GM.initializeFruitTree(p);
-                        secondFamilyTree = true;
-                    }
-                    lSys.nextGeneration();
-                    for (LeafTree tree : trees) {
-                        tree.scaling(1.3f);
-                    }
+                if (dayCycleCounter >= 12 && !secondFamilyTree) {
+                    GM.initializeFruitTree(p);
+                    GM.initializeFruitTree(p);
+                    GM.initializeFruitTree(p);
+                    GM.initializeFruitTree(p);
+                    secondFamilyTree = true;
                 }
+                // cada árvore cresce e morre de acordo com a sua própria idade
+                trees.removeIf(tree -> !tree.advanceDay());
+                GM.onTreesChanged();
 
                 if (dayCycleCounter % 3 == 0 && dayCycleCounter != 0) {
                     if (season.equals("summer")) {
                         season = "winter";
                         dayCycle = winterDayCycle;
                         GM.setNumOfFruit(15);
-                        updateSnow(dt, p, plt);
                     } else if (season.equals("winter")) {
                         season = "summer";
                         dayCycle = summerDayCycle;
                         GM.setNumOfFruit(30);
-                        updateSnow(dt, p, plt);
                     }
                 }
 
@@ -200,16 +208,24 @@ public class Game {
             }
 
             IM.grabFruit(blobVillagers, fruits);
-            IM.updateKillParticles(p, plt, dt);
-            updateSnow(dt, p, plt);
+            publishMetrics();
+            particles.update(dt);
+            // as partículas de todos os buffers são desenhadas numa só passagem
+            particleRenderer.begin(plt);
+            particles.render(particleRenderer);
+            particleRenderer.end(p.g);
+
+            // a neve é uma camada procedimental que aparece no inverno e desaparece aos poucos no verão
+            weather.setActive(season.equals("winter"));
+            weather.update(dt);
+            weather.draw(p.g, plt.getBoundingBox());
 
 
         } else {
             beforePauseTime = t1;
             gameWasPaused = true;
 
-            long hora = (beforePauseTime - t0) / 1000;
-            p.text("Horas: " + hora, 15, 70);
+            hora = (beforePauseTime - t0) / 1000;
             p.stroke(255);
             p.popStyle();
         }
@@ -225,217 +241,209 @@ public class Game {
     }
 
 
+    /**
+     * @return número de atualizações da simulação feitas até agora (não conta os frames em pausa)
+     */
+    public long getTick() {
+        return tick;
+    }
+
     public String getSeason() {
         return season;
     }
 
     /**
-     * Move os blobVillagers de acordo com a presença de predadores e frutas no mapa.
+     * Publica no canal das métricas uma amostra deste tick: o número de blobs de cada tipo e as médias do campo de
+     * visão, da velocidade máxima e da stamina inicial. Os valores vêm das TraitStats de cada população, que são
+     * mantidas à medida que os blobs nascem, morrem e mudam, por isso a amostra não percorre os blobs.
+     * A amostra leva também a taxa de reutilização (hit rate) dos pools de blobs da EntityFactory, em percentagem.
+     */
+    private void publishMetrics() {
+        sampleAverages(villagerStats, Metric.VILLAGER_COUNT, Metric.VILLAGER_AWARENESS, Metric.VILLAGER_VELOCITY,
+                Metric.VILLAGER_STAMINA);
+        sampleAverages(predatorStats, Metric.PREDATOR_COUNT, Metric.PREDATOR_AWARENESS, Metric.PREDATOR_VELOCITY,
+                Metric.PREDATOR_STAMINA);
+        EntityFactory factory = GM.getEntityFactory();
+        metricSample[Metric.VILLAGER_POOL_HIT_RATE.index()] = factory.getVillagerPool().getHitRate() * 100;
+        metricSample[Metric.PREDATOR_POOL_HIT_RATE.index()] = factory.getPredatorPool().getHitRate() * 100;
+        metrics.publish(tick, metricSample);
+    }
+
+    private void sampleAverages(TraitStats stats, Metric count, Metric awareness, Metric velocity, Metric stamina) {
+        metricSample[count.index()] = stats.getCount();
+        metricSample[awareness.index()] = stats.getMean(Trait.AWARENESS);
+        metricSample[velocity.index()] = stats.getMean(Trait.MAX_VELOCITY);
+        metricSample[stamina.index()] = stats.getMean(Trait.STAMINA);
+    }
+
+    /**
+     * Escreve o dia, a estação e as horas no canto do ecrã. É desenhado fora da câmara, por cima do mapa.
+     * @param p PApplet
+     */
+    public void drawHud(PApplet p) {
+        if (!season.equals(seasonLabelFor)) {
+            seasonLabelFor = season;
+            seasonLabel = "Estação: " + season;
+        }
+        hudFont.begin(p.g);
+        hudFont.text(dayLabel.get(dayCycleCounter + 1), 15, 30);
+        hudFont.text(seasonLabel, 15, 50);
+        hudFont.text(hourLabel.get(hora), 15, 70);
+        hudFont.end();
+    }
+
+    /**
+     * Calcula as forças dos blobVillagers de acordo com a presença de predadores e frutas no mapa.
      * A presença de predadores é priorizada, caso um blobVillager esteja perto de um predador, independentemente da
      * presença de frutas. Caso não haja predadores perto, o blobVillager irá apanhar frutas.
-     * A maneira como os blobs sabem que têm uma entidade por perto é através do seu campo de visão.
+     * A maneira como os blobs sabem que têm uma entidade por perto é através do seu campo de visão: os predadores e as
+     * frutas à vista são encontrados de uma vez com MoverKernels.hitTest sobre as posições copiadas para os arrays.
      * Se o blobPredador for o jogador, a sua stamina é reduzida, caso contrário, a stamina é recuperada.
+     * Os arrays dos dois tipos de blobs têm de ter sido preenchidos com gather.
      *
      * @param p PApplet
-     * @param dt tempo decorrido desde o último frame
      */
-    public void moveVillagerBlobs(PApplet p, float dt) {
-        for (BlobVillager blobVillager : blobVillagers) {
-            if (blobVillager != playerBlob) {
-
-                PVector totalForce = new PVector(0, 0);
-                boolean isInDanger = false;
-
-                for (BlobPredator blobPredator : blobPredators) {
-                    float distance = PVector.dist(blobVillager.getPosition(), blobPredator.getPosition());
-
-                    if (distance <= blobVillager.getAwareness()) {
-                        isInDanger = true;
-                        PVector force = blobVillager.run(blobPredator.getPosition());
-                        totalForce.add(force);
-                        if(blobPredator == playerBlob){
-                            playerBlob.consumeStamina();
-                        } else if(playerBlob != null){
-                            playerBlob.recoverStamina();
-                        }
+    private void steerVillagerBlobs(PApplet p) {
+        for (int i = 0; i < blobVillagers.size(); i++) {
+            BlobVillager blobVillager = blobVillagers.get(i);
+            if (blobVillager == playerBlob) continue;
+
+            PVector position = blobVillager.getPosition();
+            int predatorCount = MoverKernels.hitTest(position.x, position.y, blobVillager.getAwareness(), false,
+                    predatorMovers.getXs(), predatorMovers.getYs(), predatorMovers.size(), neighbours);
+
+            if (predatorCount > 0) {
+                totalForce.set(0, 0);
+                for (int h = 0; h < predatorCount; h++) {
+                    BlobPredator blobPredator = blobPredators.get(neighbours[h]);
+                    totalForce.add(blobVillager.run(blobPredator.getPosition()));
+                    if(blobPredator == playerBlob){
+                        playerBlob.consumeStamina();
+                    } else if(playerBlob != null){
+                        playerBlob.recoverStamina();
                     }
                 }
-
-                if (!isInDanger) {
-                    totalForce = blobVillager.wander(p);
-
-                    for (Fruit fruit : fruits) {
-                        float distance = PVector.dist(blobVillager.getPosition(), fruit.getPosition());
-                        if (distance <= blobVillager.getAwareness()) {
-                            totalForce = blobVillager.seek(fruit.getPosition());
-                        }
-                    }
+                villagerMovers.setForce(i, totalForce);
+            } else {
+                PVector force = blobVillager.wander(p);
+                int fruitCount = MoverKernels.hitTest(position.x, position.y, blobVillager.getAwareness(), false,
+                        fruits.getXs(), fruits.getYs(), fruits.size(), neighbours);
+                // se houver várias frutas à vista, o blobVillager vai atrás da última
+                if (fruitCount > 0) {
+                    int fruit = neighbours[fruitCount - 1];
+                    fruitTarget.set(fruits.getX(fruit), fruits.getY(fruit));
+                    force = blobVillager.seek(fruitTarget);
                 }
-
-                blobVillager.move(dt, totalForce);
+                villagerMovers.setForce(i, force);
             }
         }
     }
 
 
     /**
-     * A lógica de movimentação dos blobPredators é semelhante à dos blobVillagers, mas com a diferença de que os
-     * blobPredators têm como objetivo perseguir os blobVillagers. Se um blobVillager estiver dentro do campo de visão
-     * do blobPredator, este irá persegui-lo, caso contrário, irá vaguear pelo mapa.
+     * A lógica dos blobPredators é semelhante à dos blobVillagers, mas com a diferença de que os blobPredators têm
+     * como objetivo perseguir os blobVillagers. Se um blobVillager estiver dentro do campo de visão do blobPredator,
+     * este irá persegui-lo, caso contrário, irá vaguear pelo mapa.
      * Se o blobVillager for o player então a sua stamina é reduzida, caso contrário, a stamina é recuperada.
+     * Os arrays dos dois tipos de blobs têm de ter sido preenchidos com gather, os dos blobVillagers já com as
+     * posições depois de se moverem.
      * @param p PApplet
-     * @param dt tempo decorrido desde o último frame
      */
-    public void movePredatorBlobs(PApplet p, float dt) {
-        for (BlobPredator blobPredator : blobPredators) {
-            if (blobPredator != playerBlob) {
-
-                PVector force;
-                BlobVillager closestVillager = null;
-                float closestDistance = Float.MAX_VALUE;
-
-                for (BlobVillager blobVillager : blobVillagers) {
-                    float distance = PVector.dist(blobVillager.getPosition(), blobPredator.getPosition());
-
-                    if (distance <= blobPredator.getAwareness() && distance < closestDistance) {
-                        closestDistance = distance;
-                        closestVillager = blobVillager;
-                        if(blobVillager == playerBlob){
-                            playerBlob.consumeStamina();
-                        } else if(playerBlob != null){
-                            playerBlob.recoverStamina();
-                        }
+    private void steerPredatorBlobs(PApplet p) {
+        for (int i = 0; i < blobPredators.size(); i++) {
+            BlobPredator blobPredator = blobPredators.get(i);
+            if (blobPredator == playerBlob) continue;
+
+            PVector position = blobPredator.getPosition();
+            int villagerCount = MoverKernels.hitTest(position.x, position.y, blobPredator.getAwareness(), false,
+                    villagerMovers.getXs(), villagerMovers.getYs(), villagerMovers.size(), neighbours);
+
+            BlobVillager closestVillager = null;
+            float closestDistance = Float.MAX_VALUE;
+            for (int h = 0; h < villagerCount; h++) {
+                BlobVillager blobVillager = blobVillagers.get(neighbours[h]);
+                float distance = PVector.dist(blobVillager.getPosition(), position);
+
+                if (distance < closestDistance) {
+                    closestDistance = distance;
+                    closestVillager = blobVillager;
+                    if(blobVillager == playerBlob){
+                        playerBlob.consumeStamina();
+                    } else if(playerBlob != null){
+                        playerBlob.recoverStamina();
                     }
                 }
+            }
 
-                if (closestVillager != null) {
-                    force = blobPredator.seek(closestVillager.getPosition());
-                } else {
-                    force = blobPredator.wander(p);
-                }
-
-                blobPredator.move(dt, force);
+            if (closestVillager != null) {
+                predatorMovers.setForce(i, blobPredator.seek(closestVillager.getPosition()));
+            } else {
+                predatorMovers.setForce(i, blobPredator.wander(p));
             }
         }
-
     }
 
     /**
      * Este método é responsável por mover os blobs de acordo com o tempo decorrido desde o último frame. Se for de dia,
      * os blobs movem-se à procura de comida ou a fugir de predadores, caso contrário, os blobs movem-se para as suas
      * casas.
+     * As posições, velocidades e massas de cada tipo de blob são copiadas para arrays, as forças são calculadas para
+     * esses arrays e todos os blobs do mesmo tipo são integrados numa só chamada a MoverKernels.integrate. Os
+     * blobVillagers movem-se primeiro, por isso os blobPredators já veem as suas novas posições. O blob do jogador
+     * é movido pelo GameManager e fica de fora durante o dia.
      * @param p PApplet
      * @param dt tempo decorrido desde o último frame
      */
     public void moveBlobs(PApplet p, float dt) {
+        villagerMovers.gather(blobVillagers);
+        predatorMovers.gather(blobPredators);
+        ensureNeighbourCapacity(Math.max(fruits.size(), Math.max(blobVillagers.size(), blobPredators.size())));
+
         if(isDay){
-            moveVillagerBlobs(p, dt);
-            movePredatorBlobs(p, dt);
+            steerVillagerBlobs(p);
+            villagerMovers.integrate(dt);
+            villagerMovers.scatter(blobVillagers, playerBlob);
+
+            steerPredatorBlobs(p);
+            predatorMovers.integrate(dt);
+            predatorMovers.scatter(blobPredators, playerBlob);
         } else {
-            for (BlobVillager blobVillager : blobVillagers) {
-                bringVillagersHome(dt, blobVillager);
+            for (int i = 0; i < blobVillagers.size(); i++) {
+                PVector force = blobVillagers.get(i).stopAtHome();
+                // stopAtHome pode pôr o blob em cima da casa, por isso o seu estado volta a ser copiado
+                villagerMovers.gather(i, blobVillagers.get(i));
+                villagerMovers.setForce(i, force);
             }
-            for (BlobPredator blobPredator : blobPredators) {
-                bringPredatorsHome(dt, blobPredator);
+            for (int i = 0; i < blobPredators.size(); i++) {
+                PVector force = blobPredators.get(i).stopAtHome();
+                predatorMovers.gather(i, blobPredators.get(i));
+                predatorMovers.setForce(i, force);
             }
+            villagerMovers.integrate(dt);
+            villagerMovers.scatter(blobVillagers, null);
+            predatorMovers.integrate(dt);
+            predatorMovers.scatter(blobPredators, null);
         }
     }
 
-    private void bringVillagersHome(float dt, BlobVillager blobVillager) {
-            PVector force = blobVillager.stopAtHome();
-            blobVillager.move(dt, force);
-    }
-
-    private void bringPredatorsHome(float dt, BlobPredator blobPredator) {
-            PVector force = blobPredator.stopAtHome();
-            blobPredator.move(dt, force);
-    }
-
-    /**
-     * Criámos um efeito de partículas que simula a queda de neve no inverno. Este efeito é criado através de várias
-     * instâncias de ParticleSystem que são adicionadas a uma lista de sistemas de partículas ativas.
-     * @param p PApplet
-     */
-    private void createSnow(PApplet p) {
-        int snowCount = 15;
-
-        for (int i = 0; i < snowCount; i++) {
-            PVector position = new PVector(p.random(p.width), p.random(p.height));
-            PVector velocity = new PVector((p.random(-0.1f, 0.1f)), 0);
-
-            ParticleSystem cloudSystem = new ParticleSystem(
-                    position,
-                    velocity,
-                    PARTICLE_MASS,
-                    PARTICLE_RADIUS,
-                    p.color(211, 211, 211, 128),
-                    Float.MAX_VALUE
-            );
-
-            for (int j = 0; j < 100; j++) {
-                cloudSystem.addParticle();
-            }
-
-            activeParticleSystems.add(cloudSystem);
+    private void ensureNeighbourCapacity(int count) {
+        if (neighbours.length < count) {
+            neighbours = new int[count * 2];
         }
     }
 
     /**
-     * Este método cria um efeito de partículas que simula a presença de jogador no mapa. Este efeito é criado através
-     * de uma instância de ParticleSystem que é adicionada à lista de sistemas de partículas ativas.
-     * @param p PApplet
+     * O rasto do jogador é um emissor contínuo que segue a posição do blob controlado pelo jogador e que só está
+     * ligado enquanto existe um jogador.
      */
-    public void createPlayerParticleEffects(PApplet p) {
-        int particleCount = 100;
-
+    private void updatePlayerTrail() {
         if (playerBlob != null) {
             PVector position = playerBlob.getPosition();
-            PVector velocity = playerBlob.getVelocity();
-            playerSystem = new ParticleSystem(
-                    position,
-                    velocity,
-                    PARTICLE_MASS,
-                    PARTICLE_RADIUS,
-                    p.color(255, 215, 0, 128),
-                    1.0f
-            );
-
-            for (int j = 0; j < particleCount; j++) {
-                playerSystem.addParticle();
-            }
-
-            activeParticleSystems.add(playerSystem);
-        }
-    }
-
-    /**
-     * Atualiza o efeito de partículas que simula a queda de neve no inverno. Se for verão, o efeito é
-     * removido lentamente com uma chance de 10% a cada frame.
-     * @param dt tempo decorrido desde o último frame
-     * @param p PApplet
-     * @param plt subplot
-     */
-    public void updateSnow(float dt, PApplet p, SubPlot plt) {
-        Iterator<ParticleSystem> iterator = activeParticleSystems.iterator();
-
-        while (iterator.hasNext()) {
-            ParticleSystem cloudSystem = iterator.next();
-            cloudSystem.move(dt);
-
-            if (season.equals("summer")) {
-                if (Math.random() < 0.1) {
-                    iterator.remove();
-                }
-            }
-            cloudSystem.display(p, plt);
-        }
-
-        if (season.equals("winter") && activeParticleSystems.size() < 15) {
-            createSnow(p);
+            playerTrail.setPosition(position.x, position.y);
         }
+        playerTrail.setEnabled(playerBlob != null);
     }
 
-
     public boolean getIsDay () {
         return isDay;
     }
@@ -1,22 +1,42 @@
 package core;
 
+import model.entity.Entity;
+import model.entity.EntityRegistry;
 import model.entity.animal.Blob;
 import model.entity.animal.BlobPredator;
 import model.entity.animal.BlobVillager;
 import model.entity.plant.LeafTree;
-import model.entity.resource.Fruit;
+import model.entity.plant.TreeShapeCache;
+import model.entity.resource.ResourceStore;
 import model.factory.EntityFactory;
+import model.genetics.GenomeMutator;
+import model.genetics.ScaleMutation;
+import model.genetics.TraitStats;
+import model.lineage.LineageStore;
+import model.world.WeatherLayer;
 import model.world.WorldMap;
 import processing.IProcessingApp;
 import processing.core.PApplet;
 import processing.core.PImage;
 import processing.core.PVector;
+import tools.Camera;
+import tools.FrameCapture;
+import tools.GlyphFont;
 import tools.LSystem;
+import tools.MetricsChannel;
 import tools.Rule;
+import tools.SpatialGrid;
+import tools.ParticleEngine;
+import tools.SpriteAtlas;
+import tools.SpriteBatch;
 import tools.SubPlot;
+import tools.TextLabel;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 /**
  * O GameManager lidera o jogo. Controla a inicialização e a atualização de todos os elementos do jogo. Inicializa
@@ -29,13 +49,54 @@ public class GameManager implements IProcessingApp {
     private Game game;
     private EntityFactory entityFactory;
     private LSystem lSys;
+    private final TreeShapeCache treeShapes = new TreeShapeCache();
+    private StaticLayer staticLayer;
+    private SpriteAtlas spriteAtlas;
+    private SpriteBatch spriteBatch;
+    private final RenderLod lod = new RenderLod();
+    private GlyphFont labelFont;
+    private Camera camera;
+    private SpatialGrid blobGrid;
+    private int[] visibleBlobs = new int[256];
+    private final float[] viewBox = new float[4];
+    private boolean followPlayer = false;
+    private FrameCapture frameCapture;
+    private final TextLabel captureLabel = new TextLabel("REC: ", " frames");
+    // as threads que escrevem os frames e os frames que podem estar à espera de ser escritos
+    private static final int CAPTURE_WORKERS = 2;
+    private static final int CAPTURE_BUFFERS = 4;
+    // tempo máximo à espera que os frames capturados sejam escritos quando a gravação acaba
+    private static final long CAPTURE_CLOSE_SECONDS = 30;
+    // lado das células do índice espacial e da vista de densidade, em píxeis
+    private static final float GRID_CELL = 25;
+    // com mais blobs visíveis do que isto a vista passa a mostrar a densidade em vez dos sprites
+    private static final int DENSITY_LIMIT = 1500;
+    private static final float ZOOM_STEP = 1.25f;
+    private static final float PAN_STEP = 80;
+    private static final float LABEL_TEXT_SIZE = 15;
+    private static final float HUD_TEXT_SIZE = 19;
     private Blob blobPlayer = null;
+    private int blobPlayerId = Entity.NO_ID;
     private SubPlot subPlotGame;
-
-    private static List<BlobVillager> blobVillagers;
-    private static List<BlobPredator> blobPredators;
+    private final Random random = new Random();
+    private final GenomeMutator mutator = new GenomeMutator(random, ScaleMutation.standard());
+    private final LineageStore lineage = new LineageStore();
+    // número máximo de partículas vivas no jogo inteiro
+    private static final int PARTICLE_BUDGET = 8192;
+    private final ParticleEngine particleEngine = new ParticleEngine(PARTICLE_BUDGET);
+
+    // amostras guardadas no canal das métricas, cerca de 17 segundos a 60 ticks por segundo
+    private static final int METRICS_CAPACITY = 1024;
+    private static final MetricsChannel metrics = new MetricsChannel(Metric.COUNT, METRICS_CAPACITY);
+
+    // médias e variâncias das características de cada população, mantidas pelos registos
+    private final TraitStats villagerStats = new TraitStats();
+    private final TraitStats predatorStats = new TraitStats();
+
+    private static EntityRegistry<BlobVillager> blobVillagers;
+    private static EntityRegistry<BlobPredator> blobPredators;
     private final List<LeafTree> leafTrees;
-    private final List<Fruit> fruits;
+    private final ResourceStore fruits;
 
     private int maxFruits = 40;
     private final int maxPredators = 5; // 5
@@ -48,10 +109,12 @@ public class GameManager implements IProcessingApp {
     private boolean pauseGame = false;
 
     public GameManager() {
-        blobVillagers = new ArrayList<>();
-        blobPredators = new ArrayList<>();
+        blobVillagers = new EntityRegistry<>();
+        blobPredators = new EntityRegistry<>();
+        blobVillagers.setListener(Blob.traitStatsListener(villagerStats));
+        blobPredators.setListener(Blob.traitStatsListener(predatorStats));
         leafTrees = new ArrayList<>();
-        fruits=new ArrayList<>();
+        fruits = new ResourceStore();
     }
 
     /**
@@ -65,9 +128,15 @@ public class GameManager implements IProcessingApp {
         subPlotGame = new SubPlot(WINDOW_GAME, VP_GAME, p.width, p.height);
         // 1000px / 25 = 40 e 800px / 25 = 32
         worldMap = new WorldMap(p, 33, 40, subPlotGame);
+        spriteAtlas = new SpriteAtlas(p, subPlotGame);
+        spriteBatch = new SpriteBatch(spriteAtlas);
+        labelFont = new GlyphFont(p, spriteAtlas, LABEL_TEXT_SIZE);
+        camera = new Camera(p.width, p.height);
+        blobGrid = new SpatialGrid(0, 0, p.width, p.height, GRID_CELL);
+        staticLayer = new StaticLayer(p, spriteAtlas);
         Rule[] rules = new Rule[1];
         rules[0] = new Rule('F', "F[+F]F[-F]FL");
-        lSys = new LSystem("F", rules);
+        lSys = LSystem.intern("F", rules);
 
         PImage blobVillagerImage = p.loadImage("data/blob.png");
         PImage blobPredatorImage = p.loadImage("data/predator.png");
@@ -78,14 +147,14 @@ public class GameManager implements IProcessingApp {
 
         initializeEntities(p);
 
-        for(BlobPredator blobPredator : blobPredators){
-            blobPredator.mutatePositive(p);
-        }
-        for(BlobVillager blobVillager : blobVillagers){
-            blobVillager.mutate(p);
-        }
+        new GenomeMutator(random, ScaleMutation.positive()).mutate(blobPredators);
+        mutator.mutate(blobVillagers);
+        lineage.recordBirths(blobPredators);
+        lineage.recordBirths(blobVillagers);
 
-        game = new Game(blobVillagers, blobPredators, fruits, IM, this);
+        game = new Game(blobVillagers, blobPredators, fruits, IM, this, lineage, particleEngine,
+                new WeatherLayer(p), new GlyphFont(p, spriteAtlas, HUD_TEXT_SIZE), metrics,
+                villagerStats, predatorStats);
         worldMap.setGame(game);
 
     }
@@ -108,7 +177,8 @@ public class GameManager implements IProcessingApp {
         for(int numberOfFruits = 1; numberOfFruits <= maxFruits; numberOfFruits++){
             initializeFruit(p);
         }
-        IM = new InteractionManager(fruits, subPlotGame, entityFactory, worldMap);
+        IM = new InteractionManager(fruits, subPlotGame, entityFactory, worldMap, mutator, lineage,
+                particleEngine);
     }
 
     public void initializeVillagers(PApplet p){
@@ -118,10 +188,18 @@ public class GameManager implements IProcessingApp {
         blobPredators.add(entityFactory.addBlobPredator(worldMap, p, null, null));
     }
     public void initializeFruit(PApplet p){
-        fruits.add(entityFactory.addFruit(worldMap, p, null));
+        entityFactory.addFruit(fruits, worldMap, p, null);
     }
     public void initializeFruitTree(PApplet p){
-        leafTrees.add(entityFactory.addFruitTree(worldMap, p));
+        leafTrees.add(entityFactory.addFruitTree(worldMap, p, lSys));
+        staticLayer.invalidate();
+    }
+
+    /**
+     * As árvores mudaram (cresceram, encolheram ou morreram), por isso a camada estática tem de ser refeita.
+     */
+    public void onTreesChanged() {
+        staticLayer.invalidate();
     }
 
     /**
@@ -134,28 +212,70 @@ public class GameManager implements IProcessingApp {
      */
     @Override
     public void draw(PApplet p, float dt) {
+        // os blobs mortos são reutilizados, por isso o jogador só continua válido se o id do blob não mudou
+        if (blobPlayer != null && blobPlayer.getId() != blobPlayerId) {
+            blobPlayer = null;
+        }
 
         worldMap.updateTransition(game.getIsDay());
-        worldMap.draw(p);
+        if (followPlayer && blobPlayer != null) {
+            PVector pos = blobPlayer.getPosition();
+            camera.follow(subPlotGame.getPixelX(pos.x), subPlotGame.getPixelY(pos.y), dt);
+        }
+        lod.update(p, camera, blobVillagers.size() + blobPredators.size());
 
-        game.update(lSys, p, leafTrees, fruits, subPlotGame, dt, maxFruits, pauseGame, blobPlayer);
+        // o mapa, os blobs e as partículas são desenhados com a câmara, o texto é desenhado depois por cima
+        camera.begin(p.g);
+        staticLayer.draw(p, worldMap, blobVillagers, blobPredators, leafTrees, treeShapes, subPlotGame,
+                game.getSeason(), lod.showHouses());
 
-        for (BlobVillager blob : blobVillagers) {
-            blob.display(p, subPlotGame);
-            blob.displayInfo(p, subPlotGame);
+        game.update(p, leafTrees, fruits, subPlotGame, dt, maxFruits, pauseGame, blobPlayer);
+
+        int visible = indexBlobs();
+        if (visible > DENSITY_LIMIT) {
+            displayDensity(p);
         }
-        for (BlobPredator blob : blobPredators) {
-            blob.display(p, subPlotGame);
-            blob.displayInfo(p, subPlotGame);
+
+        // todos os sprites (blobs e frutas) são desenhados num só batch a partir do atlas, só os blobs que o índice
+        // espacial diz estarem na vista e as frutas dentro da mesma área é que entram
+        spriteBatch.begin(p.g);
+        if (visible > DENSITY_LIMIT) {
+            if (blobPlayer != null) {
+                blobPlayer.displaySprite(spriteBatch, subPlotGame);
+            }
+        } else {
+            for (int i = 0; i < visible; i++) {
+                getBlob(visibleBlobs[i]).displaySprite(spriteBatch, subPlotGame);
+            }
+        }
+        fruits.display(spriteBatch, subPlotGame, lod.getVisibleArea(viewBox));
+        spriteBatch.end();
+
+        if (visible <= DENSITY_LIMIT) {
+            for (int i = 0; i < visible; i++) {
+                displayRing(p, getBlob(visibleBlobs[i]));
+            }
+        }
+        camera.end(p.g);
+
+        if (visible <= DENSITY_LIMIT) {
+            labelFont.begin(p.g);
+            for (int i = 0; i < visible; i++) {
+                displayLabels(getBlob(visibleBlobs[i]));
+            }
+            labelFont.end();
         }
-        for (Fruit fruit : fruits) {
-            fruit.display(p, subPlotGame);
+        if (lod.showHud()) {
+            game.drawHud(p);
         }
-        for (LeafTree tree : leafTrees) {
-            p.pushMatrix();
-            tree.setPose(3.14f/2, p, subPlotGame);
-            tree.render(lSys, p, subPlotGame, game.getSeason());
-            p.popMatrix();
+        if (frameCapture != null) {
+            frameCapture.capture(p.g, game.getTick());
+            // desenhado depois da captura, para não aparecer nos frames gravados
+            if (lod.showHud()) {
+                labelFont.begin(p.g);
+                labelFont.text(captureLabel.get(frameCapture.getCaptured()), 15, 90);
+                labelFont.end();
+            }
         }
 
         if (blobPlayer != null && !pauseGame) {
@@ -165,12 +285,154 @@ public class GameManager implements IProcessingApp {
 
     }
 
-    public static List<BlobPredator> getBlobPredators() {
-        return new ArrayList<>(blobPredators);
+    /**
+     * Passa os blobs que saíram do mapa para o lado oposto e refaz o índice espacial com as suas posições em píxeis.
+     * No índice os blobVillagers têm os primeiros números e os blobPredators os seguintes (ver getBlob).
+     * @return número de blobs dentro da vista, cujos índices ficam em visibleBlobs
+     */
+    private int indexBlobs() {
+        blobGrid.clear();
+        for (BlobVillager blob : blobVillagers) {
+            blob.wrapAround(subPlotGame);
+            PVector pos = blob.getPosition();
+            blobGrid.add(subPlotGame.getPixelX(pos.x), subPlotGame.getPixelY(pos.y));
+        }
+        for (BlobPredator blob : blobPredators) {
+            blob.wrapAround(subPlotGame);
+            PVector pos = blob.getPosition();
+            blobGrid.add(subPlotGame.getPixelX(pos.x), subPlotGame.getPixelY(pos.y));
+        }
+        blobGrid.build();
+
+        if (visibleBlobs.length < blobGrid.size()) {
+            visibleBlobs = new int[Math.max(blobGrid.size(), visibleBlobs.length * 2)];
+        }
+        return lod.queryVisible(blobGrid, visibleBlobs);
     }
 
-    public static List<BlobVillager> getBlobVillagers() {
-        return new ArrayList<>(blobVillagers);
+    private Blob getBlob(int index) {
+        int villagers = blobVillagers.size();
+        return index < villagers ? blobVillagers.get(index) : blobPredators.get(index - villagers);
+    }
+
+    /**
+     * Vista de densidade, usada quando há demasiados blobs na vista para desenhar um sprite por blob: cada célula do
+     * índice espacial é pintada com uma opacidade proporcional ao número de blobs que tem.
+     */
+    private void displayDensity(PApplet p) {
+        float cell = blobGrid.getCellSize();
+        float[] box = camera.getViewBox(viewBox);
+        int c0 = blobGrid.column(box[0]);
+        int c1 = blobGrid.column(box[0] + box[2]);
+        int r0 = blobGrid.row(box[1]);
+        int r1 = blobGrid.row(box[1] + box[3]);
+
+        p.pushStyle();
+        p.noStroke();
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int count = blobGrid.getCellCount(c, r);
+                if (count > 0) {
+                    p.fill(255, 220, 60, Math.min(230, 40 + count * 12));
+                    p.rect(blobGrid.getMinX() + c * cell, blobGrid.getMinY() + r * cell, cell, cell);
+                }
+            }
+        }
+        p.popStyle();
+    }
+
+    /**
+     * Desenha o campo de visão de um blob de acordo com o nível de detalhe atual. Um blob está em foco se for o
+     * jogador ou se o rato estiver em cima dele.
+     */
+    private void displayRing(PApplet p, Blob blob) {
+        PVector pos = blob.getPosition();
+        float px = subPlotGame.getPixelX(pos.x);
+        float py = subPlotGame.getPixelY(pos.y);
+        float ringPixels = subPlotGame.getVectorX(blob.getAwareness()) * camera.getZoom();
+        if (lod.showRing(isFocused(blob, px, py), ringPixels)) {
+            blob.display(p, subPlotGame);
+        }
+    }
+
+    /**
+     * Escreve as etiquetas de um blob em foco, fora da câmara para o texto ter sempre o mesmo tamanho.
+     */
+    private void displayLabels(Blob blob) {
+        PVector pos = blob.getPosition();
+        float px = subPlotGame.getPixelX(pos.x);
+        float py = subPlotGame.getPixelY(pos.y);
+        if (lod.showLabel(isFocused(blob, px, py))) {
+            blob.displayInfo(labelFont, camera.toScreenX(px), camera.toScreenY(py));
+        }
+    }
+
+    private boolean isFocused(Blob blob, float px, float py) {
+        float hitRadius = subPlotGame.getVectorX((float) blob.getHitBox() / 2);
+        return blob == blobPlayer || lod.isHovered(px, py, hitRadius);
+    }
+
+    /**
+     * Canal com as métricas publicadas pela simulação em cada tick, lido pelos gráficos do Dashboard.
+     */
+    public static MetricsChannel getMetrics() {
+        return metrics;
+    }
+
+    public LineageStore getLineage() {
+        return lineage;
+    }
+
+    public EntityFactory getEntityFactory() {
+        return entityFactory;
+    }
+
+    public long getTick() {
+        return game.getTick();
+    }
+
+    /**
+     * Liberta os recursos do jogo quando a aplicação termina: acaba a gravação dos frames, esperando que os frames
+     * capturados sejam escritos, e fecha o LineageStore, o que apaga o ficheiro temporário com os blocos de registos
+     * escritos em disco.
+     */
+    public void dispose() {
+        stopCapture();
+        lineage.close();
+    }
+
+    /**
+     * Começa ou acaba a gravação dos frames do jogo. Os frames são gravados numa pasta nova dentro de "capture", de
+     * N em N ticks (-Decosim.capture.interval, por omissão 10) e em PNG ou em bruto (-Decosim.capture.format=raw).
+     * @param p PApplet
+     */
+    public void toggleCapture(PApplet p) {
+        if (frameCapture != null) {
+            stopCapture();
+            return;
+        }
+        int interval = Integer.getInteger("ecosim.capture.interval", 10);
+        FrameCapture.Format format = System.getProperty("ecosim.capture.format", "png").equalsIgnoreCase("raw")
+                ? FrameCapture.Format.RAW : FrameCapture.Format.PNG;
+        File directory = new File("capture", "run_" + System.currentTimeMillis());
+        frameCapture = new FrameCapture(directory, p.g.pixelWidth, p.g.pixelHeight, interval, format,
+                CAPTURE_WORKERS, CAPTURE_BUFFERS);
+    }
+
+    /**
+     * Acaba a gravação, se estiver a decorrer, e espera que os frames já capturados sejam escritos no disco. As
+     * threads que escrevem os frames são daemon, por isso sem esta espera os últimos frames perdiam-se ao sair.
+     */
+    private void stopCapture() {
+        if (frameCapture == null) {
+            return;
+        }
+        try {
+            frameCapture.closeAndWait(CAPTURE_CLOSE_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        frameCapture = null;
     }
 
     public void setNumOfFruit(int numOfFruit) {
@@ -187,7 +449,7 @@ public class GameManager implements IProcessingApp {
      */
     @Override
     public void mousePressed(PApplet p) {
-        PVector mousePosition = new PVector(p.mouseX, p.height - p.mouseY);
+        PVector mousePosition = new PVector(camera.toBaseX(p.mouseX), p.height - camera.toBaseY(p.mouseY));
         BlobVillager blobVillager;
         BlobPredator blobPredator;
 
@@ -198,7 +460,8 @@ public class GameManager implements IProcessingApp {
                 blobVillager = entityFactory.addBlobVillager(worldMap, p, blobVillagers.get((int)
                         p.random(blobVillagers.size())), mousePosition);
             }
-            blobVillager.mutate(p);
+            mutator.mutate(blobVillager);
+            lineage.recordBirth(blobVillager);
             blobVillagers.add(blobVillager);
 
         } else if (p.mouseButton == PApplet.RIGHT) {
@@ -208,10 +471,11 @@ public class GameManager implements IProcessingApp {
                 blobPredator = entityFactory.addBlobPredator(worldMap, p, blobPredators.get((int)
                         p.random(blobPredators.size())), mousePosition);
             }
-            blobPredator.mutate(p);
+            mutator.mutate(blobPredator);
+            lineage.recordBirth(blobPredator);
             blobPredators.add(blobPredator);
         } else if(p.mouseButton == PApplet.CENTER){
-            fruits.add(entityFactory.addFruit(worldMap, p, mousePosition));
+            entityFactory.addFruit(fruits, worldMap, p, mousePosition);
         }
     }
 
@@ -234,17 +498,23 @@ public class GameManager implements IProcessingApp {
      */
     @Override
     public void keyPressed(PApplet p) {
+        if (lod.handleKey(p.key) || handleCameraKey(p)) {
+            return;
+        }
+
         if (p.key == ' ') {
             pauseGame = !pauseGame;
 
         } else if (p.key == '1') {
             if(!blobVillagers.isEmpty()){
                 blobPlayer = game.getRandomBlobVillager(p);
+                blobPlayerId = blobPlayer.getId();
             }
 
         } else if(p.key == '2'){
             if(!blobPredators.isEmpty()){
                 blobPlayer = game.getRandomBlobPredator(p);
+                blobPlayerId = blobPlayer.getId();
             }
         }
 
@@ -254,6 +524,64 @@ public class GameManager implements IProcessingApp {
         }
     }
 
+    /**
+     * Teclas da câmara: '+' e '-' fazem zoom no centro do ecrã, as setas movem a câmara, 'f' liga e desliga o
+     * seguimento do jogador e '0' volta a mostrar o mapa inteiro. A tecla 'c' começa e acaba a gravação dos frames.
+     * @return true se a tecla era da câmara ou da gravação
+     */
+    private boolean handleCameraKey(PApplet p) {
+        if (p.key == PApplet.CODED) {
+            switch (p.keyCode) {
+                case PApplet.UP:
+                    camera.pan(0, -PAN_STEP);
+                    return true;
+                case PApplet.DOWN:
+                    camera.pan(0, PAN_STEP);
+                    return true;
+                case PApplet.LEFT:
+                    camera.pan(-PAN_STEP, 0);
+                    return true;
+                case PApplet.RIGHT:
+                    camera.pan(PAN_STEP, 0);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        switch (p.key) {
+            case '+':
+            case '=':
+                camera.zoom(ZOOM_STEP, p.width / 2f, p.height / 2f);
+                return true;
+            case '-':
+                camera.zoom(1 / ZOOM_STEP, p.width / 2f, p.height / 2f);
+                return true;
+            case '0':
+                camera.reset();
+                followPlayer = false;
+                return true;
+            case 'f':
+            case 'F':
+                followPlayer = !followPlayer;
+                return true;
+            case 'c':
+            case 'C':
+                toggleCapture(p);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * A roda do rato faz zoom no ponto que está debaixo do rato.
+     * @param p PApplet
+     * @param count número de passos da roda (negativo para aproximar)
+     */
+    public void mouseWheel(PApplet p, float count) {
+        camera.zoom((float) Math.pow(ZOOM_STEP, -count), p.mouseX, p.mouseY);
+    }
+
     @Override
     public void mouseReleased(PApplet p) {}
 
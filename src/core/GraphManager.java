@@ -1,23 +1,32 @@
 package core;
 
-import model.entity.animal.BlobPredator;
-import model.entity.animal.BlobVillager;
-import processing.IProcessingApp;
 import processing.core.PApplet;
-
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import tools.MetricsChannel;
 
 /**
- * Esta classe é responsável por gerir as janelas dos gráficos e coordena a recolha e visualização das estatísticas do
- * jogo ao longo do tempo. Cada janela de gráfico vai recolher uma estatística específica de acordo com o valor do
- * windowType. As estatísticas recolhidas são guardadas em listas de pontos de dados que são atualizadas a cada segundo.
+ * Esta classe é responsável por um gráfico do Dashboard e coordena a recolha e visualização de uma estatística do
+ * jogo ao longo do tempo. Cada gráfico vai recolher uma estatística específica de acordo com o valor do windowType.
+ * As estatísticas não são lidas diretamente das listas de blobs: a simulação publica uma amostra em cada tick no
+ * MetricsChannel e cada gráfico lê as amostras com o seu próprio cursor, guardando um ponto a cada segundo de
+ * simulação (SAMPLE_TICKS ticks).
  */
-public class GraphManager implements IProcessingApp {
+public class GraphManager implements DashboardPanel {
+    private static final int MAX_POINTS = 100;
+    // 60 ticks são cerca de um segundo de simulação
+    private static final int SAMPLE_TICKS = 60;
+
     private final int windowType;
-    private float timeSinceLastUpdate = 0;
-    private final List<Float> villagerDataPoints = new CopyOnWriteArrayList<>();
-    private final List<Float> predatorDataPoints = new CopyOnWriteArrayList<>();
+    private final Metric villagerMetric;
+    private final Metric predatorMetric;
+    private final MetricsChannel metrics;
+    private final MetricsChannel.Cursor cursor;
+    private final float[] sample;
+    private long nextSampleTick = 0;
+    // tamanho do painel onde o gráfico está a ser desenhado
+    private float width;
+    private float height;
+    private final DataSeries villagerDataPoints = new DataSeries(MAX_POINTS);
+    private final DataSeries predatorDataPoints = new DataSeries(MAX_POINTS);
 
     private static final int BACKGROUND_COLOR = 240;
     private static final int AXIS_COLOR = 50;
@@ -33,116 +42,71 @@ public class GraphManager implements IProcessingApp {
     private static final int LEGEND_SIZE = 14;
 
     public GraphManager(int windowType) {
-        this.windowType = windowType;
-    }
-
-    @Override
-    public void setup(PApplet p) {
-        p.background(BACKGROUND_COLOR);
-        p.frameRate(60);
-        p.textSize(TEXT_SIZE);
-    }
-
-    @Override
-    public void draw(PApplet p, float deltaTime) {
-        timeSinceLastUpdate += deltaTime;
-        float updateInterval = 1.0f;
-        if (timeSinceLastUpdate >= updateInterval) {
-            collectData();
-            timeSinceLastUpdate = 0;
-        }
-        displayGraph(p);
+        this(windowType, GameManager.getMetrics());
     }
 
     /**
-     * Para cada janela de gráfico vai ser recolhida uma estatística específica de acordo com o valor do windowType.
-     * Se as informações recolhidas forem superiores a 100, as informações mais antigas são removidas para manter
-     * a janela de gráfico atualizada e não sobrecarregada.
+     * @param windowType estatística do gráfico: 0 população, 1 campo de visão, 2 velocidade máxima, 3 stamina e
+     *                   4 reutilização dos pools de blobs
+     * @param metrics canal com as amostras publicadas pela simulação
      */
-    private void collectData() {
+    public GraphManager(int windowType, MetricsChannel metrics) {
+        this.windowType = windowType;
+        this.metrics = metrics;
+        this.cursor = metrics.cursorAtStart();
+        this.sample = new float[metrics.getValueCount()];
         switch (windowType) {
-            case 0 -> collectPopulationData();
-            case 1 -> collectAwarenessData();
-            case 2 -> collectVelocityData();
-            case 3 -> collectStaminaData();
+            case 1 -> {
+                villagerMetric = Metric.VILLAGER_AWARENESS;
+                predatorMetric = Metric.PREDATOR_AWARENESS;
+            }
+            case 2 -> {
+                villagerMetric = Metric.VILLAGER_VELOCITY;
+                predatorMetric = Metric.PREDATOR_VELOCITY;
+            }
+            case 3 -> {
+                villagerMetric = Metric.VILLAGER_STAMINA;
+                predatorMetric = Metric.PREDATOR_STAMINA;
+            }
+            case 4 -> {
+                villagerMetric = Metric.VILLAGER_POOL_HIT_RATE;
+                predatorMetric = Metric.PREDATOR_POOL_HIT_RATE;
+            }
+            default -> {
+                villagerMetric = Metric.VILLAGER_COUNT;
+                predatorMetric = Metric.PREDATOR_COUNT;
+            }
         }
-
-        while (villagerDataPoints.size() > 100) villagerDataPoints.remove(0);
-        while (predatorDataPoints.size() > 100) predatorDataPoints.remove(0);
     }
 
-    private void collectPopulationData() {
-        villagerDataPoints.add((float) GameManager.getBlobVillagers().size());
-        predatorDataPoints.add((float) GameManager.getBlobPredators().size());
-    }
-
-    private void collectAwarenessData() {
-        villagerDataPoints.add(calculateAverageAwareness(GameManager.getBlobVillagers()));
-        predatorDataPoints.add(calculateAverageAwareness(GameManager.getBlobPredators()));
-    }
-
-    private void collectVelocityData() {
-        villagerDataPoints.add(calculateAverageVelocity(GameManager.getBlobVillagers()));
-        predatorDataPoints.add(calculateAverageVelocity(GameManager.getBlobPredators()));
-    }
-
-    private void collectStaminaData() {
-        villagerDataPoints.add(calculateAverageStamina(GameManager.getBlobVillagers()));
-        predatorDataPoints.add(calculateAverageStamina(GameManager.getBlobPredators()));
-    }
-
-    /**
-     * Calcula a média da estatística de awareness de todos os blobs.
-     * @param blobs Lista de blobs
-     * @return Média da estatística de awareness
-     */
-    private float calculateAverageAwareness(List<?> blobs) {
-        if (blobs.isEmpty()) return 0;
-        float total = 0;
-        for (Object blob : blobs) {
-            if (blob instanceof BlobVillager) {
-                total += ((BlobVillager) blob).getAwareness();
-            } else if (blob instanceof BlobPredator) {
-                total += ((BlobPredator) blob).getAwareness();
-            }
-        }
-        return total / blobs.size();
+    @Override
+    public void update(float deltaTime) {
+        collectData();
     }
 
-    /**
-     * Calcula a média da velocidade máxima de todos os blobs.
-     * @param blobs Lista de blobs
-     * @return Média da velocidade máxima
-     */
-    private float calculateAverageVelocity(List<?> blobs) {
-        if (blobs.isEmpty()) return 0;
-        float total = 0;
-        for (Object blob : blobs) {
-            if (blob instanceof BlobVillager) {
-                total += ((BlobVillager) blob).getMaxVelocity();
-            } else if (blob instanceof BlobPredator) {
-                total += ((BlobPredator) blob).getMaxVelocity();
-            }
-        }
-        return total / blobs.size();
+    @Override
+    public void draw(PApplet p, float width, float height) {
+        this.width = width;
+        this.height = height;
+        p.textSize(TEXT_SIZE);
+        displayGraph(p);
     }
 
     /**
-     * Calcula a média da stamina de todos os blobs.
-     * @param blobs Lista de blobs
-     * @return Média da stamina
+     * Lê as amostras publicadas desde a última leitura e guarda um ponto por cada segundo de simulação. Como a
+     * amostragem é feita pelo tick, os pontos ficam igualmente espaçados no tempo de simulação, mesmo que o jogo
+     * esteja em pausa ou o Dashboard desenhe mais devagar.
+     * Só são guardados os últimos 100 pontos, para manter o gráfico atualizado e não sobrecarregado.
      */
-    private float calculateAverageStamina(List<?> blobs) {
-        if (blobs.isEmpty()) return 0;
-        float total = 0;
-        for (Object blob : blobs) {
-            if (blob instanceof BlobVillager) {
-                total += ((BlobVillager) blob).getStaminaInit();
-            } else if (blob instanceof BlobPredator) {
-                total += ((BlobPredator) blob).getStaminaInit();
+    private void collectData() {
+        long tick;
+        while ((tick = metrics.poll(cursor, sample)) >= 0) {
+            if (tick >= nextSampleTick) {
+                villagerDataPoints.add(sample[villagerMetric.index()]);
+                predatorDataPoints.add(sample[predatorMetric.index()]);
+                nextSampleTick = tick - tick % SAMPLE_TICKS + SAMPLE_TICKS;
             }
         }
-        return total / blobs.size();
     }
 
     /**
@@ -151,17 +115,19 @@ public class GraphManager implements IProcessingApp {
      * @param p PApplet
      */
     private void displayGraph(PApplet p) {
-        p.background(BACKGROUND_COLOR);
+        p.noStroke();
+        p.fill(BACKGROUND_COLOR);
+        p.rect(0, 0, width, height);
 
         float margin = 50;
-        float graphWidth = p.width - 2 * margin;
-        float graphHeight = p.height - 2 * margin;
+        float graphWidth = width - 2 * margin;
+        float graphHeight = height - 2 * margin;
 
         drawTitle(p, margin);
 
         if (villagerDataPoints.isEmpty() && predatorDataPoints.isEmpty()) {
             p.textAlign(PApplet.CENTER, PApplet.CENTER);
-            p.text("Sem estastíticas por enquanto...", p.width / 2f, p.height / 2f);
+            p.text("Sem estastíticas por enquanto...", width / 2f, height / 2f);
             return;
         }
 
@@ -183,14 +149,19 @@ public class GraphManager implements IProcessingApp {
         p.textSize(TITLE_SIZE);
         p.textAlign(PApplet.CENTER, PApplet.TOP);
         p.fill(AXIS_COLOR);
-        String title = switch (windowType) {
+        p.text(getTitle(), width / 2f, margin / 2f);
+    }
+
+    @Override
+    public String getTitle() {
+        return switch (windowType) {
             case 0 -> "População ao Longo do Tempo";
             case 1 -> "Campo de Visão";
             case 2 -> "Velocidade Máxima";
             case 3 -> "Stamina";
+            case 4 -> "Reutilização dos Pools (%)";
             default -> "Título do Gráfico";
         };
-        p.text(title, p.width / 2f, margin / 2f);
     }
 
     /**
@@ -231,8 +202,8 @@ public class GraphManager implements IProcessingApp {
         for (int i = 0; i <= 11; i++) {
             float x = margin + (i * graphWidth / 11);
             float y = margin + (i * graphHeight / 11);
-            p.line(x, margin, x, p.height - margin);
-            p.line(margin, y, p.width - margin, y);
+            p.line(x, margin, x, height - margin);
+            p.line(margin, y, width - margin, y);
 
             if (i > 0) {
                 float value = maxValue * 1.1f * (11 - i) / 11;
@@ -257,19 +228,19 @@ public class GraphManager implements IProcessingApp {
         float labelMargin = margin - 10;
 
         // desenha os eixos
-        p.line(margin, p.height - margin, p.width - margin, p.height - margin);
-        p.line(margin, p.height - margin, margin, margin);
+        p.line(margin, height - margin, width - margin, height - margin);
+        p.line(margin, height - margin, margin, margin);
 
         // meter o 0 na origem
         p.fill(AXIS_COLOR);
         p.textSize(TEXT_SIZE - 2);
         p.textAlign(PApplet.RIGHT, PApplet.CENTER);
-        p.text("0", labelMargin, p.height - margin);
+        p.text("0", labelMargin, height - margin);
 
         // legenda do eixo dos x (horizontal)
         p.textSize(TEXT_SIZE);
         p.textAlign(PApplet.CENTER, PApplet.TOP);
-        p.text("Tempo", p.width / 2f, p.height - margin / 2f);
+        p.text("Tempo", width / 2f, height - margin / 2f);
 
         // legenda do eixo dos y (vertical)
         p.textAlign(PApplet.CENTER, PApplet.BOTTOM);
@@ -288,7 +259,7 @@ public class GraphManager implements IProcessingApp {
      * @param color Cor da linha
      * @param maxValue Valor máximo do eixo y
      */
-    private void drawDataLine(PApplet p, float margin, List<Float> data, int color, float maxValue) {
+    private void drawDataLine(PApplet p, float margin, DataSeries data, int color, float maxValue) {
         if (data.size() < 2) return;
 
         p.stroke(color);
@@ -297,8 +268,8 @@ public class GraphManager implements IProcessingApp {
 
         p.beginShape();
         for (int i = 0; i < data.size(); i++) {
-            float x = PApplet.map(i, 0, data.size() - 1, margin, p.width - margin);
-            float y = PApplet.map(data.get(i), 0, maxValue * 1.1f, p.height - margin, margin);
+            float x = PApplet.map(i, 0, data.size() - 1, margin, width - margin);
+            float y = PApplet.map(data.get(i), 0, maxValue * 1.1f, height - margin, margin);
             p.vertex(x, y);
         }
         p.endShape();
@@ -306,8 +277,8 @@ public class GraphManager implements IProcessingApp {
         p.fill(color);
         p.noStroke();
         for (int i = 0; i < data.size(); i += 5) {
-            float x = PApplet.map(i, 0, data.size() - 1, margin, p.width - margin);
-            float y = PApplet.map(data.get(i), 0, maxValue * 1.1f, p.height - margin, margin);
+            float x = PApplet.map(i, 0, data.size() - 1, margin, width - margin);
+            float y = PApplet.map(data.get(i), 0, maxValue * 1.1f, height - margin, margin);
             p.circle(x, y, POINT_SIZE);
         }
     }
@@ -318,33 +289,64 @@ public class GraphManager implements IProcessingApp {
      * @param data Lista de pontos de dados
      * @return Valor máximo
      */
-    private float getMaxValue(List<Float> data) {
-        return data.stream()
-                .max(Float::compare)
-                .orElse(1.0f);
+    private float getMaxValue(DataSeries data) {
+        return data.isEmpty() ? 1.0f : data.max();
     }
 
     /**
-     * Limpa os pontos de dados recolhidos para todos os gráficos quando o jogo é reiniciado.
+     * Limpa os pontos de dados recolhidos quando o jogo é reiniciado.
      */
-    public static void resetGraphs() {
-        GraphManager[] activeGraphs = new GraphManager[4];
-        for (GraphManager graph : activeGraphs) {
-            if (graph != null) {
-                graph.villagerDataPoints.clear();
-                graph.predatorDataPoints.clear();
+    @Override
+    public void clear() {
+        villagerDataPoints.clear();
+        predatorDataPoints.clear();
+    }
+
+    /**
+     * Últimos pontos de uma linha do gráfico, num array circular: acrescentar um ponto com a lista cheia escreve por
+     * cima do mais antigo, sem mover os outros.
+     */
+    private static final class DataSeries {
+        private final float[] values;
+        private int start = 0;
+        private int size = 0;
+
+        DataSeries(int capacity) {
+            values = new float[capacity];
+        }
+
+        void add(float value) {
+            if (size < values.length) {
+                values[(start + size++) % values.length] = value;
+            } else {
+                values[start] = value;
+                start = (start + 1) % values.length;
             }
         }
-    }
 
-    @Override
-    public void mousePressed(PApplet p) {}
-    @Override
-    public void keyPressed(PApplet p) {}
-    @Override
-    public void keyReleased(PApplet p) {}
-    @Override
-    public void mouseReleased(PApplet p) {}
-    @Override
-    public void mouseDragged(PApplet p) {}
-}
\ No newline at end of file
+        float get(int index) {
+            return values[(start + index) % values.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        float max() {
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, get(i));
+            }
+            return max;
+        }
+
+        void clear() {
+            start = 0;
+            size = 0;
+        }
+    }
+}
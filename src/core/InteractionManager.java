@@ -2,16 +2,20 @@ package core;
 
 import model.entity.animal.BlobPredator;
 import model.entity.animal.BlobVillager;
-import model.entity.resource.Fruit;
+import model.entity.resource.ResourceStore;
+import model.entity.resource.ResourceType;
 import model.factory.EntityFactory;
+import model.genetics.GenomeMutator;
+import model.lineage.LineageStore;
 import model.world.WorldMap;
 import processing.core.PApplet;
 import processing.core.PVector;
-import tools.ParticleSystem;
+import tools.MoverKernels;
+import tools.ParticleEngine;
+import tools.ParticleRing;
 import tools.SubPlot;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -26,26 +30,42 @@ public class InteractionManager {
     private final SubPlot plt;
     private final EntityFactory entityFactory;
     private final WorldMap worldMap;
+    private final GenomeMutator mutator;
+    private final LineageStore lineage;
 
-    private final List<Fruit> fruits;
-    private final List<ParticleSystem> killParticleSystem;
+    private final ResourceStore fruits;
+    private final ParticleEngine particles;
+    private final ParticleRing killParticles;
+
+    private float[] villagerXs = new float[16];
+    private float[] villagerYs = new float[16];
+    private int[] hitIndices = new int[16];
 
     private static final float PARTICLE_LIFETIME = 2.0f;
     private static final float PARTICLE_RADIUS = 3.0f;
-    private static final float PARTICLE_MASS = 1.0f;
+    private static final int KILL_PARTICLES = 20;
+    private static final int KILL_PARTICLE_CAPACITY = 1024;
+    private static final int KILL_PARTICLE_COLOR = 0x807A0000; // (122, 0, 0, 128)
 
-    public InteractionManager(List<Fruit> fruits, SubPlot plt, EntityFactory entityFactory, WorldMap worldMap) {
+    public InteractionManager(ResourceStore fruits, SubPlot plt, EntityFactory entityFactory, WorldMap worldMap,
+                              GenomeMutator mutator, LineageStore lineage, ParticleEngine particles) {
         this.fruits = fruits;
+        this.mutator = mutator;
+        this.lineage = lineage;
         this.plt = plt;
         this.entityFactory = entityFactory;
         this.worldMap = worldMap;
-        this.killParticleSystem = new ArrayList<>();
+        this.particles = particles;
+        this.killParticles = particles.createRing(KILL_PARTICLE_CAPACITY, PARTICLE_LIFETIME, PARTICLE_RADIUS,
+                KILL_PARTICLE_COLOR);
     }
 
     /**
      * Este método organiza a reprodução dos blobsVillagers. Se um blobVillager tiver pelo menos 2 frutas pode
      * reproduzir-se e criar no máximo 2 novos blobs.
-     * Todos os blobs reproduzidos são mutados para terem características diferentes mas que originem dos pais.
+     * Todos os blobs reproduzidos são mutados para terem características diferentes mas que originem dos pais. A
+     * mutação é aplicada de uma só vez a todos os blobs que nasceram nesta noite e os nascimentos são registados no
+     * LineageStore.
      * @param blobsVillagers lista dos blobVillagers vivos
      * @param p instância da classe PApplet
      */
@@ -55,7 +75,7 @@ public class InteractionManager {
 
         for (BlobVillager blobVillager : blobsVillagers) {
             boolean dontDie = true;
-            int foodCount = blobVillager.getInventory().size();
+            int foodCount = blobVillager.getFruitCount();
             int possibleReproductions = Math.min(foodCount / 2, 2);
 
             for (int i = 0; i < possibleReproductions; i++) {
@@ -64,22 +84,28 @@ public class InteractionManager {
                 dontDie = false;
             }
 
-            foodCount = blobVillager.getInventory().size();
+            foodCount = blobVillager.getFruitCount();
             if (foodCount == 0 && dontDie) {
                 villagersToRemove.add(blobVillager);
                 createKillEffect(blobVillager.getPosition(), p);
             }
         }
 
-        mutateBlobVillagers(p, newVillagers);
+        mutator.mutate(newVillagers);
+        lineage.recordBirths(newVillagers);
         blobsVillagers.addAll(newVillagers);
         blobsVillagers.removeAll(villagersToRemove);
+        for (BlobVillager villager : villagersToRemove) {
+            entityFactory.recycle(villager);
+        }
     }
 
     /**
      * Este método organiza a reprodução dos blobsPredators. Se um blobPredator tiver pele menos 2 blobs no seu
      * inventário, este pode reproduzir-se uma vez e criar um novo blob.
-     * Todos os blobs reproduzidos são mutados para terem características diferentes mas que originem dos pais.
+     * Todos os blobs reproduzidos são mutados para terem características diferentes mas que originem dos pais. A
+     * mutação é aplicada de uma só vez a todos os blobs que nasceram nesta noite e os nascimentos são registados no
+     * LineageStore.
      * @param blobsPredators lista dos blobPredators vivos
      * @param p instância da classe PApplet
      */
@@ -88,40 +114,34 @@ public class InteractionManager {
         List<BlobPredator> predatorsToRemove = new ArrayList<>();
 
         for (BlobPredator blobPredator : blobsPredators) {
-            if (blobPredator.getInventory().size() >= 2 ) {
+            if (blobPredator.getPreyCount() >= 2 ) {
                 newPredators.add(entityFactory.addBlobPredator(worldMap, p, blobPredator, null));
-                blobPredator.removeNumberOfBlobs(2);
+                blobPredator.removeNumberOfPrey(2);
 
-            } else if (blobPredator.getInventory().size() == 1) {
-                blobPredator.removeNumberOfBlobs(1);
-            } else if (blobPredator.getInventory().isEmpty()) {
+            } else if (blobPredator.getPreyCount() == 1) {
+                blobPredator.removeNumberOfPrey(1);
+            } else if (blobPredator.getPreyCount() == 0) {
                 predatorsToRemove.add(blobPredator);
                 createKillEffect(blobPredator.getPosition(), p);
             }
         }
 
-        mutateBlobPredators(p,newPredators);
+        mutator.mutate(newPredators);
+        lineage.recordBirths(newPredators);
 
         blobsPredators.addAll(newPredators);
         blobsPredators.removeAll(predatorsToRemove);
-    }
-
-    private void mutateBlobPredators(PApplet p,List<BlobPredator> newPredators) {
-        for(BlobPredator blobPredator : newPredators){
-            blobPredator.mutate(p);
-        }
-    }
-
-    private void mutateBlobVillagers(PApplet p,List<BlobVillager> newVillagers) {
-        for(BlobVillager blobVillager : newVillagers){
-            blobVillager.mutate(p);
+        for (BlobPredator predator : predatorsToRemove) {
+            entityFactory.recycle(predator);
         }
     }
 
     /**
      * Este método organiza a morte dos blobs. Se um blobVillager estiver dentro da hitbox de um blobPredator,
-     * este é morto e removido da lista de blobsVillagers. O blobPredator que matou o blobVillager adiciona-o ao seu
-     * inventário.
+     * este é morto e removido da lista de blobsVillagers. O blobPredator que matou o blobVillager conta-o como presa.
+     * O blobVillager é removido logo que morre, para não poder ser morto uma segunda vez por outro blobPredator.
+     * As posições dos blobVillagers são copiadas para arrays e cada blobPredator é testado contra todos eles de uma
+     * vez com MoverKernels.hitTest, usando distâncias ao quadrado.
      * @param blobVillagers lista dos blobVillagers vivos
      * @param blobs lista dos blobPredators vivos
      * @param plt instância da classe SubPlot
@@ -130,113 +150,114 @@ public class InteractionManager {
      */
     public List<BlobVillager> killBlob(List<BlobVillager> blobVillagers, List<BlobPredator> blobs, SubPlot plt,PApplet p) {
         List<BlobVillager> villagersToRemove = new ArrayList<>();
-        List<BlobVillager> villagersToAdd = new ArrayList<>();
-        float[] hitBox;
+        gatherVillagerPositions(blobVillagers);
 
         for (BlobPredator blobPredator : blobs) {
-            hitBox = plt.getVectorCoord(blobPredator.getHitBox(), blobPredator.getHitBox());
+            float hitBox = Math.max(plt.getVectorX(blobPredator.getHitBox()), plt.getVectorY(blobPredator.getHitBox()));
+            PVector position = blobPredator.getPosition();
 
-            for (BlobVillager blobVillager : blobVillagers) {
-                if ((blobPredator.getPosition().dist(blobVillager.getPosition()) < hitBox[0] ||
-                        blobPredator.getPosition().dist(blobVillager.getPosition()) < hitBox[1]) ) {
+            int hitCount = MoverKernels.hitTest(position.x, position.y, hitBox, true, villagerXs, villagerYs,
+                    blobVillagers.size(), hitIndices);
+            if (hitCount == 0) continue;
 
-                    villagersToRemove.add(blobVillager);
-                    villagersToAdd.add(blobVillager);
-                    createKillEffect(blobVillager.getPosition(), p);
-                }
-            }
-
-            for (BlobVillager villager : villagersToAdd) {
-                blobPredator.addBlob(villager);
+            // remove do maior índice para o menor para que os índices que faltam continuem válidos
+            for (int h = hitCount - 1; h >= 0; h--) {
+                BlobVillager blobVillager = blobVillagers.get(hitIndices[h]);
+                villagersToRemove.add(blobVillager);
+                blobPredator.addPrey();
+                createKillEffect(blobVillager.getPosition(), p);
+                blobVillagers.remove(hitIndices[h]);
             }
-            villagersToAdd.clear();
+            gatherVillagerPositions(blobVillagers);
         }
 
-        blobVillagers.removeAll(villagersToRemove);
         return villagersToRemove;
     }
 
+    private void gatherVillagerPositions(List<BlobVillager> blobVillagers) {
+        int count = blobVillagers.size();
+        if (villagerXs.length < count) {
+            villagerXs = new float[count * 2];
+            villagerYs = new float[count * 2];
+        }
+        for (int i = 0; i < count; i++) {
+            PVector position = blobVillagers.get(i).getPosition();
+            villagerXs[i] = position.x;
+            villagerYs[i] = position.y;
+        }
+        ensureHitCapacity(count);
+    }
+
+    private void ensureHitCapacity(int count) {
+        if (hitIndices.length < count) {
+            hitIndices = new int[count * 2];
+        }
+    }
+
     /**
      * Dos blobVillagers que morreram iremos adicionar metade das frutas que tinham no inventário à lista de frutas do
-     * mapa.
+     * mapa. As frutas são recriadas nas posições onde tinham sido apanhadas. Depois disso os blobVillagers já não são
+     * precisos e são devolvidos ao pool da entityFactory.
      * @param villagers lista dos blobVillagers que morreram
      */
     public void addFruitFromDeadVillagers(List<BlobVillager> villagers) {
         for (BlobVillager villager : villagers) {
-            List<Fruit> inventory = villager.getInventory();
-            if (!inventory.isEmpty()) {
-                int halfFruits = inventory.size() / 2;
-                for (int i = 0; i < halfFruits; i++) {
-                    fruits.add(inventory.get(i));
-                }
+            int halfFruits = villager.getFruitCount() / 2;
+            for (int i = 0; i < halfFruits; i++) {
+                entityFactory.addFruit(fruits, villager.getFruitX(i), villager.getFruitY(i));
             }
+            entityFactory.recycle(villager);
         }
     }
 
     /**
      * Este método organiza a apanha de frutas por parte dos blobVillagers. Se um blobVillager estiver dentro da hitbox
-     * de uma fruta, este apanha-o e adiciona-o ao seu inventário.
+     * de uma fruta, este apanha-o e adiciona-o ao seu inventário. Cada fruta só pode ser apanhada por um blobVillager.
+     * Cada blobVillager é testado contra todas as frutas de uma vez com MoverKernels.hitTest, usando a maior hitbox
+     * de fruta; os candidatos são depois confirmados com a hitbox do seu tipo.
      * @param blobVillagers lista dos blobVillagers vivos
-     * @param fruits lista das frutas no mapa
+     * @param fruits armazém das frutas no mapa
      */
-    public void grabFruit(List<BlobVillager> blobVillagers, List<Fruit> fruits) {
-        List<Fruit> fruitsToRemove = new ArrayList<>();
-        float[] villagerHitBox;
-        float[] fruitHitBox;
+    public void grabFruit(List<BlobVillager> blobVillagers, ResourceStore fruits) {
+        float maxFruitHitBoxX = plt.getVectorX(fruits.getMaxHitBox());
+        float maxFruitHitBoxY = plt.getVectorY(fruits.getMaxHitBox());
 
         for (BlobVillager blobVillager : blobVillagers) {
-            villagerHitBox = plt.getVectorCoord(blobVillager.getHitBox(), blobVillager.getHitBox());
-            for (Fruit fruit : fruits) {
-                fruitHitBox = plt.getVectorCoord(fruit.getHitBox(), fruit.getHitBox());
-                float distance = blobVillager.getPosition().dist(fruit.getPosition());
-                if (distance <= villagerHitBox[0] + fruitHitBox[0] || distance <= villagerHitBox[1] + fruitHitBox[1]) {
-                    blobVillager.addFruit(fruit);
-                    fruitsToRemove.add(fruit);
+            if (fruits.isEmpty()) return;
+
+            float villagerHitBoxX = plt.getVectorX(blobVillager.getHitBox());
+            float villagerHitBoxY = plt.getVectorY(blobVillager.getHitBox());
+            PVector position = blobVillager.getPosition();
+
+            float reach = Math.max(villagerHitBoxX + maxFruitHitBoxX, villagerHitBoxY + maxFruitHitBoxY);
+            ensureHitCapacity(fruits.size());
+            int hitCount = MoverKernels.hitTest(position.x, position.y, reach, false, fruits.getXs(), fruits.getYs(),
+                    fruits.size(), hitIndices);
+
+            // remove do maior índice para o menor porque a remoção troca a fruta removida com a última
+            for (int h = hitCount - 1; h >= 0; h--) {
+                int i = hitIndices[h];
+                ResourceType type = fruits.getType(i);
+                float fruitReach = Math.max(villagerHitBoxX + plt.getVectorX(type.getHitBox()),
+                        villagerHitBoxY + plt.getVectorY(type.getHitBox()));
+                float dx = fruits.getX(i) - position.x;
+                float dy = fruits.getY(i) - position.y;
+                if (dx * dx + dy * dy <= fruitReach * fruitReach) {
+                    blobVillager.addFruit(fruits.getX(i), fruits.getY(i));
+                    fruits.remove(i);
                 }
             }
         }
-
-        fruits.removeAll(fruitsToRemove);
     }
 
     /**
-     * Este método cria um sistema de partículas que representa a morte de um blob.
+     * Este método lança as partículas que representam a morte de um blob. As partículas vão para um buffer de
+     * capacidade fixa do motor de partículas, que as atualiza e desenha junto com as restantes.
      * @param position posição do blob que morreu
      * @param p instância da classe PApplet
      */
     private void createKillEffect(PVector position, PApplet p) {
-        ParticleSystem ps = new ParticleSystem(
-                position.copy(),
-                new PVector(0, 0),
-                PARTICLE_MASS,
-                PARTICLE_RADIUS,
-                p.color(122, 0, 0, 128),
-                PARTICLE_LIFETIME
-        );
-
-        for(int i = 0; i < 20; i++) {
-            ps.addParticle();
-        }
-        killParticleSystem.add(ps);
-    }
-
-    /**
-     * Este método atualiza e desenha os sistemas de partículas que representam a morte dos blobs.
-     * @param p instância da classe PApplet
-     * @param plt instância da classe SubPlot
-     * @param dt tempo desde o último frame
-     */
-    public void updateKillParticles(PApplet p, SubPlot plt, float dt) {
-        Iterator<ParticleSystem> iterator = killParticleSystem.iterator();
-        while (iterator.hasNext()) {
-            ParticleSystem ps = iterator.next();
-            ps.move(dt);
-            ps.display(p, plt);
-
-            if (!ps.isAlive()) {
-                iterator.remove();
-            }
-        }
+        particles.burst(killParticles, position.x, position.y, KILL_PARTICLES);
     }
 
 }
\ No newline at end of file
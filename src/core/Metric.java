@@ -0,0 +1,25 @@
+package core;
+
+/**
+ * Valores de cada amostra publicada pela simulação no MetricsChannel, em cada tick. A posição de cada valor na
+ * amostra é o ordinal da constante.
+ */
+public enum Metric {
+    VILLAGER_COUNT,
+    PREDATOR_COUNT,
+    VILLAGER_AWARENESS,
+    PREDATOR_AWARENESS,
+    VILLAGER_VELOCITY,
+    PREDATOR_VELOCITY,
+    VILLAGER_STAMINA,
+    PREDATOR_STAMINA,
+    // percentagem dos nascimentos servidos com blobs reutilizados dos pools da EntityFactory
+    VILLAGER_POOL_HIT_RATE,
+    PREDATOR_POOL_HIT_RATE;
+
+    public static final int COUNT = values().length;
+
+    public int index() {
+        return ordinal();
+    }
+}
@@ -0,0 +1,171 @@
+package core;
+
+import processing.core.PApplet;
+import tools.Camera;
+import tools.SpatialGrid;
+
+/**
+ * Controla o nível de detalhe com que os blobs são desenhados. O nível (tier) depende do número de entidades no mapa:
+ * com poucos blobs os campos de visão são desenhados para todos, com muitos só para os blobs em foco (o jogador e o
+ * blob debaixo do rato). As etiquetas de texto só aparecem para os blobs em foco e os blobs fora do ecrã não são
+ * desenhados. Assim o custo de desenhar depende do detalhe visível e não do número de entidades.
+ * Cada camada extra (campos de visão, etiquetas, casas e HUD) pode ser mudada com uma tecla:
+ * 'r' campos de visão, 'l' etiquetas, 'h' casas e 'u' HUD.
+ */
+public class RenderLod {
+    /**
+     * Nível de detalhe escolhido a partir do número de entidades.
+     */
+    public enum Tier { FULL, REDUCED, MINIMAL }
+
+    /**
+     * AUTO segue o nível de detalhe, ALL desenha sempre e OFF nunca desenha.
+     */
+    public enum Overlay { AUTO, ALL, OFF }
+
+    private static final int FULL_LIMIT = 60;
+    private static final int REDUCED_LIMIT = 400;
+    private static final float MIN_RING_PIXELS = 6;
+    private static final float MARGIN = 40;
+
+    private Tier tier = Tier.FULL;
+    private Overlay rings = Overlay.AUTO;
+    private Overlay labels = Overlay.AUTO;
+    private boolean houses = true;
+    private boolean hud = true;
+
+    private float left, top, right, bottom;
+    private float mouseX, mouseY;
+    private final float[] box = new float[4];
+
+    /**
+     * Atualiza o nível de detalhe e a área visível para este frame.
+     * @param p objeto PApplet, para a posição do rato
+     * @param camera câmara com a área do mapa que está no ecrã
+     * @param entityCount número de blobs no mapa
+     */
+    public void update(PApplet p, Camera camera, int entityCount) {
+        if (entityCount <= FULL_LIMIT) {
+            tier = Tier.FULL;
+        } else if (entityCount <= REDUCED_LIMIT) {
+            tier = Tier.REDUCED;
+        } else {
+            tier = Tier.MINIMAL;
+        }
+        camera.getViewBox(box);
+        left = box[0] - MARGIN;
+        top = box[1] - MARGIN;
+        right = box[0] + box[2] + MARGIN;
+        bottom = box[1] + box[3] + MARGIN;
+        mouseX = camera.toBaseX(p.mouseX);
+        mouseY = camera.toBaseY(p.mouseY);
+    }
+
+    /**
+     * @param out array onde é escrita a área
+     * @return área visível em píxeis do SubPlot com a margem usada para os blobs, no formato {x, y, largura, altura}
+     */
+    public float[] getVisibleArea(float[] out) {
+        out[0] = left;
+        out[1] = top;
+        out[2] = right - left;
+        out[3] = bottom - top;
+        return out;
+    }
+
+    /**
+     * Procura no índice espacial os blobs que estão dentro da área visível (com uma pequena margem).
+     * @param grid índice com as posições dos blobs em píxeis do SubPlot
+     * @param out array onde são escritos os índices dos blobs visíveis
+     * @return número de blobs visíveis
+     */
+    public int queryVisible(SpatialGrid grid, int[] out) {
+        return grid.query(left, top, right, bottom, out);
+    }
+
+    /**
+     * @param px posição x do blob em píxeis
+     * @param py posição y do blob em píxeis
+     * @param radius raio do blob em píxeis
+     * @return true se o rato está em cima do blob
+     */
+    public boolean isHovered(float px, float py, float radius) {
+        if (tier == Tier.MINIMAL) {
+            return false;
+        }
+        float dx = px - mouseX;
+        float dy = py - mouseY;
+        return dx * dx + dy * dy <= radius * radius;
+    }
+
+    /**
+     * @param focused true se o blob é o jogador ou está debaixo do rato
+     * @param ringPixels raio do campo de visão em píxeis do ecrã
+     * @return true se o campo de visão do blob deve ser desenhado
+     */
+    public boolean showRing(boolean focused, float ringPixels) {
+        switch (rings) {
+            case OFF:
+                return false;
+            case ALL:
+                return true;
+            default:
+                return focused || (tier == Tier.FULL && ringPixels >= MIN_RING_PIXELS);
+        }
+    }
+
+    /**
+     * @param focused true se o blob é o jogador ou está debaixo do rato
+     * @return true se as etiquetas de texto do blob devem ser desenhadas
+     */
+    public boolean showLabel(boolean focused) {
+        switch (labels) {
+            case OFF:
+                return false;
+            case ALL:
+                return true;
+            default:
+                return focused;
+        }
+    }
+
+    public boolean showHouses() {
+        return houses;
+    }
+
+    public boolean showHud() {
+        return hud;
+    }
+
+    public Tier getTier() {
+        return tier;
+    }
+
+    /**
+     * Muda uma camada de acordo com a tecla pressionada.
+     * @param key tecla pressionada
+     * @return true se a tecla mudou alguma camada
+     */
+    public boolean handleKey(char key) {
+        switch (Character.toLowerCase(key)) {
+            case 'r':
+                rings = next(rings);
+                return true;
+            case 'l':
+                labels = next(labels);
+                return true;
+            case 'h':
+                houses = !houses;
+                return true;
+            case 'u':
+                hud = !hud;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Overlay next(Overlay overlay) {
+        return Overlay.values()[(overlay.ordinal() + 1) % Overlay.values().length];
+    }
+}
@@ -0,0 +1,111 @@
+package core;
+
+import model.entity.EntityRegistry;
+import model.entity.animal.Blob;
+import model.entity.plant.LeafTree;
+import model.entity.plant.TreeShapeCache;
+import model.world.WorldMap;
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.core.PVector;
+import tools.SpriteAtlas;
+import tools.SpriteBatch;
+import tools.SubPlot;
+
+import java.util.List;
+
+/**
+ * Camada com o conteúdo do mapa que quase nunca muda: o fundo, as casas dos blobs e as árvores. Estes elementos são
+ * desenhados numa imagem fora do ecrã que só é refeita quando algum deles muda (o fundo passa para outro nível da
+ * transição, nasce ou morre um blob, muda a estação ou as árvores crescem). Em cada frame basta desenhar esta imagem
+ * e por cima dela só o que se move.
+ */
+public class StaticLayer {
+    private final PGraphics layer;
+    private final SpriteBatch sprites;
+
+    private boolean dirty = true;
+    private long lastBackground;
+    private long lastVillagers;
+    private long lastPredators;
+    private String lastSeason;
+    private boolean lastHouses = true;
+    private int rebuilds = 0;
+
+    /**
+     * @param p objeto PApplet, a camada tem o tamanho da janela e usa o mesmo tipo de renderer
+     * @param atlas atlas com os sprites das casas
+     */
+    public StaticLayer(PApplet p, SpriteAtlas atlas) {
+        sprites = new SpriteBatch(atlas);
+        layer = p.createGraphics(p.width, p.height, p.g.isGL() ? PApplet.P2D : PApplet.JAVA2D);
+    }
+
+    /**
+     * Obriga a camada a ser refeita no próximo frame, usado quando as árvores mudam.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Refaz a camada se alguma coisa mudou desde a última vez e desenha-a no ecrã.
+     * @param p objeto PApplet
+     * @param worldMap mapa com o fundo
+     * @param villagers blobVillagers, para as suas casas
+     * @param predators blobPredators, para as suas casas
+     * @param trees árvores do mapa
+     * @param treeShapes cache com as imagens das árvores
+     * @param plt subplot
+     * @param season estação atual
+     * @param houses true se as casas dos blobs devem ser desenhadas
+     */
+    public void draw(PApplet p, WorldMap worldMap, EntityRegistry<? extends Blob> villagers,
+                     EntityRegistry<? extends Blob> predators, List<LeafTree> trees, TreeShapeCache treeShapes,
+                     SubPlot plt, String season, boolean houses) {
+        long background = worldMap.getBackgroundStamp();
+        if (dirty || background != lastBackground || villagers.getVersion() != lastVillagers
+                || predators.getVersion() != lastPredators || !season.equals(lastSeason) || houses != lastHouses) {
+            lastBackground = background;
+            lastVillagers = villagers.getVersion();
+            lastPredators = predators.getVersion();
+            lastSeason = season;
+            lastHouses = houses;
+            dirty = false;
+            rebuild(p, worldMap, villagers, predators, trees, treeShapes, plt, season, houses);
+        }
+        p.image(layer, 0, 0);
+    }
+
+    public int getRebuilds() {
+        return rebuilds;
+    }
+
+    private void rebuild(PApplet p, WorldMap worldMap, EntityRegistry<? extends Blob> villagers,
+                         EntityRegistry<? extends Blob> predators, List<LeafTree> trees, TreeShapeCache treeShapes,
+                         SubPlot plt, String season, boolean houses) {
+        layer.beginDraw();
+        layer.clear();
+        worldMap.draw(layer);
+        if (houses) {
+            sprites.begin(layer);
+            for (Blob blob : villagers) {
+                PVector house = blob.getHouse();
+                blob.getHouseType().display(sprites, plt, house.x, house.y);
+            }
+            for (Blob blob : predators) {
+                PVector house = blob.getHouse();
+                blob.getHouseType().display(sprites, plt, house.x, house.y);
+            }
+            sprites.end();
+        }
+        for (LeafTree tree : trees) {
+            layer.pushMatrix();
+            tree.setPose(3.14f/2, layer, plt);
+            tree.render(treeShapes, p, layer, plt, season);
+            layer.popMatrix();
+        }
+        layer.endDraw();
+        rebuilds++;
+    }
+}
@@ -0,0 +1,25 @@
+#ifdef GL_ES
+precision mediump float;
+precision mediump int;
+#endif
+
+#define PROCESSING_TEXTURE_SHADER
+
+// mistura as quatro imagens de fundo: dia/noite pela transição e verão/inverno pelo fade da estação
+uniform sampler2D summerDay;
+uniform sampler2D summerNight;
+uniform sampler2D winterDay;
+uniform sampler2D winterNight;
+
+uniform float transition;
+uniform float winter;
+
+varying vec4 vertColor;
+varying vec4 vertTexCoord;
+
+void main() {
+    vec2 uv = vertTexCoord.st;
+    vec3 summer = mix(texture2D(summerDay, uv).rgb, texture2D(summerNight, uv).rgb, transition);
+    vec3 cold = mix(texture2D(winterDay, uv).rgb, texture2D(winterNight, uv).rgb, transition);
+    gl_FragColor = vec4(mix(summer, cold, winter), 1.0);
+}
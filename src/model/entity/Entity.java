@@ -0,0 +1,13 @@
+package model.entity;
+
+/**
+ * Interface comum às entidades do jogo que são guardadas num EntityRegistry. Cada entidade recebe do registo um
+ * identificador inteiro estável (com geração) que pode ser guardado por outras partes do jogo em vez da referência.
+ */
+public interface Entity {
+    int NO_ID = -1;
+
+    int getId();
+
+    void setId(int id);
+}
@@ -0,0 +1,281 @@
+package model.entity;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Registo de entidades com identificadores geracionais. As entidades ficam guardadas de forma densa num array, por
+ * isso percorrer o registo é tão rápido como percorrer um ArrayList. A remoção troca a entidade removida com a última
+ * (swap-remove), o que a torna O(1) mas não preserva a ordem.
+ * Cada identificador junta o índice de uma "slot" (20 bits) com a geração dessa slot (11 bits). Quando uma entidade
+ * é removida a geração da slot aumenta, por isso um identificador antigo deixa de ser válido mesmo que a slot seja
+ * reutilizada. As slots livres são reutilizadas por ordem de libertação (FIFO) e só quando já há pelo menos
+ * {@value #MIN_FREE_SLOTS} livres, o que espalha a reutilização por todas elas. A geração dá a volta ao fim de 2048
+ * reutilizações da mesma slot, por isso um identificador antigo só pode voltar a parecer vivo depois de pelo menos
+ * 2048 * {@value #MIN_FREE_SLOTS} remoções; quem guarda identificadores durante mais tempo do que isso (por exemplo
+ * numa gravação) deve guardá-los junto com outra informação, como o tick.
+ * O registo estende AbstractList para poder ser percorrido e passado ao código do jogo que lê uma List, mas não cumpre
+ * todo o contrato de List: a ordem das entidades muda quando alguma é removida (a última passa para o lugar da
+ * removida) e não é possível escolher a posição de uma entidade, por isso add(int, T) e set(int, T) (e os métodos
+ * que os usam, como sort e replaceAll) lançam UnsupportedOperationException. Quem precisar de uma ordem estável deve
+ * copiar as entidades para uma lista própria.
+ * @param <T> tipo de entidade guardada
+ */
+public class EntityRegistry<T extends Entity> extends AbstractList<T> {
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_BITS = 11;
+    private static final int GENERATION_MASK = (1 << GENERATION_BITS) - 1;
+    /** Número mínimo de slots livres antes de alguma ser reutilizada. */
+    public static final int MIN_FREE_SLOTS = 1024;
+
+    private Object[] dense;
+    private int[] denseToSlot;
+    private int size;
+
+    private int[] slotToDense;
+    private int[] generations;
+    private int[] freeSlots;
+    private int freeHead;
+    private int freeCount;
+    private int slotCount;
+
+    private long version;
+    private Listener<? super T> listener;
+
+    /**
+     * Avisado sempre que uma entidade entra ou sai do registo, por exemplo para manter estatísticas da população
+     * sem ter de a percorrer.
+     * @param <T> tipo de entidade do registo
+     */
+    public interface Listener<T> {
+        void onAdded(T entity);
+
+        void onRemoved(T entity);
+    }
+
+    public EntityRegistry() {
+        this(16);
+    }
+
+    public EntityRegistry(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        dense = new Object[capacity];
+        denseToSlot = new int[capacity];
+        slotToDense = new int[capacity];
+        generations = new int[capacity];
+        freeSlots = new int[capacity];
+    }
+
+    /**
+     * @param listener avisado das entidades que entram e saem do registo, ou null
+     */
+    public void setListener(Listener<? super T> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Adiciona uma entidade ao registo e atribui-lhe um novo identificador.
+     * @param entity entidade a adicionar
+     * @return true, tal como List.add
+     */
+    @Override
+    public boolean add(T entity) {
+        register(entity);
+        return true;
+    }
+
+    /**
+     * Adiciona uma entidade ao registo.
+     * @param entity entidade a adicionar
+     * @return identificador atribuído à entidade
+     */
+    public int register(T entity) {
+        int slot;
+        if (freeCount > MIN_FREE_SLOTS || (freeCount > 0 && slotCount > INDEX_MASK)) {
+            slot = freeSlots[freeHead];
+            freeHead = (freeHead + 1) % freeSlots.length;
+            freeCount--;
+        } else {
+            if (slotCount > INDEX_MASK) {
+                throw new IllegalStateException("EntityRegistry cheio");
+            }
+            slot = slotCount++;
+            if (slot == slotToDense.length) {
+                growSlots(slotToDense.length * 2);
+            }
+        }
+
+        if (size == dense.length) {
+            dense = Arrays.copyOf(dense, size * 2);
+            denseToSlot = Arrays.copyOf(denseToSlot, size * 2);
+        }
+
+        int id = (generations[slot] << INDEX_BITS) | slot;
+        dense[size] = entity;
+        denseToSlot[size] = slot;
+        slotToDense[slot] = size;
+        size++;
+
+        entity.setId(id);
+        modCount++;
+        version++;
+        if (listener != null) {
+            listener.onAdded(entity);
+        }
+        return id;
+    }
+
+    /**
+     * Verifica em O(1) se o identificador pertence a uma entidade que ainda está no registo.
+     * @param id identificador da entidade
+     * @return true se a entidade ainda estiver viva
+     */
+    public boolean isAlive(int id) {
+        if (id < 0) return false;
+        int slot = id & INDEX_MASK;
+        return slot < slotCount && slotToDense[slot] >= 0 && generations[slot] == (id >>> INDEX_BITS);
+    }
+
+    /**
+     * @param id identificador da entidade
+     * @return a entidade com esse identificador ou null se já não existir
+     */
+    @SuppressWarnings("unchecked")
+    public T getById(int id) {
+        return isAlive(id) ? (T) dense[slotToDense[id & INDEX_MASK]] : null;
+    }
+
+    /**
+     * Remove em O(1) a entidade com o identificador dado.
+     * @param id identificador da entidade
+     * @return true se a entidade existia
+     */
+    public boolean removeById(int id) {
+        if (!isAlive(id)) return false;
+        removeAt(slotToDense[id & INDEX_MASK]);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (T) dense[index];
+    }
+
+    /**
+     * Não suportado: a posição de cada entidade é decidida pelo registo.
+     * @throws UnsupportedOperationException sempre
+     */
+    @Override
+    public T set(int index, T entity) {
+        throw new UnsupportedOperationException("EntityRegistry não permite substituir entidades por posição; "
+                + "use remove e add");
+    }
+
+    /**
+     * Não suportado: as entidades novas ficam sempre no fim.
+     * @throws UnsupportedOperationException sempre
+     */
+    @Override
+    public void add(int index, T entity) {
+        throw new UnsupportedOperationException("EntityRegistry não permite inserir entidades numa posição; "
+                + "use add(T)");
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Entity && getById(((Entity) o).getId()) == o;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) return false;
+        removeById(((Entity) o).getId());
+        return true;
+    }
+
+    /**
+     * Remove a entidade na posição dada trocando-a com a última. Desta forma o iterador de AbstractList continua a
+     * funcionar, pois volta a visitar a posição onde ficou a entidade trocada.
+     */
+    @Override
+    public T remove(int index) {
+        T removed = get(index);
+        removeAt(index);
+        return removed;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> entities) {
+        boolean changed = false;
+        for (Object entity : entities) {
+            changed |= remove(entity);
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        while (size > 0) {
+            removeAt(size - 1);
+        }
+    }
+
+    /**
+     * Número que muda sempre que uma entidade é adicionada ou removida. Permite a quem guarda dados derivados do
+     * registo (por exemplo uma imagem em cache) saber se tem de os recalcular.
+     * @return versão atual do registo
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Aumenta as tabelas das slots. A fila de slots livres é circular, por isso é copiada já por ordem, a começar em 0.
+     */
+    private void growSlots(int capacity) {
+        slotToDense = Arrays.copyOf(slotToDense, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+        int[] queue = new int[capacity];
+        for (int i = 0; i < freeCount; i++) {
+            queue[i] = freeSlots[(freeHead + i) % freeSlots.length];
+        }
+        freeSlots = queue;
+        freeHead = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void removeAt(int index) {
+        int slot = denseToSlot[index];
+        T entity = (T) dense[index];
+        int last = size - 1;
+
+        dense[index] = dense[last];
+        denseToSlot[index] = denseToSlot[last];
+        slotToDense[denseToSlot[index]] = index;
+        dense[last] = null;
+        size--;
+
+        slotToDense[slot] = -1;
+        generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+        freeSlots[(freeHead + freeCount) % freeSlots.length] = slot;
+        freeCount++;
+
+        entity.setId(Entity.NO_ID);
+        modCount++;
+        version++;
+        if (listener != null) {
+            listener.onRemoved(entity);
+        }
+    }
+}
@@ -1,17 +1,36 @@
 package model.entity.animal;
 
+import model.entity.Entity;
+import model.entity.EntityRegistry;
+import model.entity.resource.ResourceType;
+import model.genetics.Genome;
+import model.genetics.Trait;
+import model.genetics.TraitStats;
+import model.lineage.LineageStore;
 import processing.core.PApplet;
 import processing.core.PImage;
 import processing.core.PVector;
+import tools.GlyphFont;
 import tools.Mover;
+import tools.Poolable;
+import tools.SpriteAtlas;
+import tools.SpriteBatch;
 import tools.SubPlot;
+import tools.TextLabel;
 
-public abstract class Blob extends Mover {
+public abstract class Blob extends Mover implements Entity, Poolable {
+    private int id = NO_ID;
+    private int lineageId = LineageStore.NO_LINEAGE;
+    private int parentLineageId = LineageStore.NO_LINEAGE;
+    private boolean pooled;
     PVector wanderTarget;
     private final PImage blobImage;
-    private final PImage blobHouse;
+    private int sprite = -1;
+    private final ResourceType houseType;
     private final PVector house;
     private final PVector playerForce;
+    final TextLabel staminaLabel = new TextLabel("S: ", "");
+    final TextLabel velocityLabel = new TextLabel("", " px/s");
 
     float maxX = 1000;
     float maxY = 800;
@@ -19,156 +38,210 @@ public abstract class Blob extends Mover {
     float wanderDistance = 150;
     float wanderJitter = 10;
 
+    private final Genome genome;
+    // estatísticas da população onde o Blob está a ser contado e os valores do genoma que lá estão somados
+    private TraitStats traitStats;
+    private final float[] countedTraits = new float[Trait.COUNT];
     float maxVel;
-    private float maxVelInit;
     float stamina;
-    float staminaInit;
-    float awareness;
 
     private long t0;
     private long t1;
 
-    public Blob(PVector pos, PVector vel, float mass, PImage blobImage, float awareness, float stamina,
-                float maxVelocity, PVector house, PImage houseImage) {
+    public Blob(PVector pos, PVector vel, float mass, PImage blobImage, Genome genome, PVector house,
+                ResourceType houseType) {
         super(pos, vel, mass);
         this.blobImage = blobImage;
         this.wanderTarget = new PVector();
-        this.awareness = awareness;
+        this.genome = new Genome();
+        this.genome.copyFrom(genome);
         this.house = house;
-        this.staminaInit = stamina;
-        this.stamina = staminaInit;
-        this.maxVelInit = maxVelocity;
-        this.maxVel = maxVelInit;
-        this.blobHouse = houseImage;
+        this.stamina = getStaminaInit();
+        this.maxVel = getMaxVelocity();
+        this.houseType = houseType;
         this.playerForce = new PVector();
     }
 
-    public float getMaxVelocity() {
-        return maxVelInit;
+    /**
+     * Limpa o estado que ficou da vida anterior do Blob quando este é reutilizado a partir de um ObjectPool.
+     */
+    @Override
+    public void reset() {
+        velocity.set(0, 0);
+        wanderTarget.set(0, 0);
+        playerForce.set(0, 0);
+        t0 = 0;
+        t1 = 0;
+        lineageId = LineageStore.NO_LINEAGE;
+        parentLineageId = LineageStore.NO_LINEAGE;
     }
 
-    public abstract void displayInfo(PApplet p, SubPlot subPlotGame);
+    @Override
+    public boolean isPooled() {
+        return pooled;
+    }
 
-    public float getStamina() {
-        return stamina;
+    @Override
+    public void setPooled(boolean pooled) {
+        this.pooled = pooled;
     }
 
-    public float getStaminaInit() {
-        return staminaInit;
+    /**
+     * Inicializa um Blob reutilizado com uma nova posição, casa e características.
+     * @param pos posição inicial
+     * @param house posição da casa
+     * @param genome genoma a copiar para o Blob (por exemplo o do pai)
+     */
+    public void init(PVector pos, PVector house, Genome genome) {
+        this.position.set(pos);
+        this.house.set(house);
+        this.genome.copyFrom(genome);
+        onGenomeChanged();
     }
 
     /**
-     * O método mutate procura saber se o Blob irá sofrer uma mutação. Primeiro averigua saber se irá ocorrer uma
-     * mutação. Para tal, é necessário que o valor aleatório gerado esteja abaixo de 0.5. Caso se verifique, é
-     * necessário saber se a mutação será positiva ou negativa. Para tal, é gerado um novo valor aleatório entre 0 e 1.
-     * Se o valor gerado for inferior a 0.5, a mutação será positiva, caso contrário, será negativa.
-     * @param p objeto da classe PApplet
+     * @return id do registo de nascimento deste Blob no LineageStore
      */
-    public void mutate(PApplet p) {
-        if (p.random(0, 1) <= 0.5f) {
-            if (p.random(0, 1) <= 0.5f) {
-                mutatePositive(p);
-            } else {
-                mutateNegative(p);
-            }
-        }
-        maxVel = maxVelInit;
-        stamina = staminaInit;
+    public int getLineageId() {
+        return lineageId;
+    }
+
+    public void setLineageId(int lineageId) {
+        this.lineageId = lineageId;
+    }
 
+    public int getParentLineageId() {
+        return parentLineageId;
+    }
+
+    public void setParentLineageId(int parentLineageId) {
+        this.parentLineageId = parentLineageId;
+    }
+
+    public PVector getHouse() {
+        return house;
+    }
+
+    public ResourceType getHouseType() {
+        return houseType;
+    }
+
+    public Genome getGenome() {
+        return genome;
     }
 
     /**
-     * O método mutatePositive é responsável por realizar mutações positivas no Blob. Para tal, é gerado um número
-     * aleatório entre 1 e 4, que irá determinar o número de mutações a serem realizadas. De seguida, é gerado um novo
-     * número aleatório entre 0 e 3, que irá determinar o tipo de mutação a ser realizada. Dependendo do valor, a
-     * característica irá ser aumentada em 20%.
-     * @param p objeto da classe PApplet
+     * Chamado sempre que o genoma muda. O Blob volta a ter a stamina e a velocidade máximas do novo genoma e, se
+     * estiver a ser contado nas estatísticas da população, os seus valores são trocados pelos novos.
      */
-    public void mutatePositive(PApplet p){
-        int numberOfMutations = (int) p.random(1, 4);
-
-        for(int n = 0; n < numberOfMutations; n++){
-            int typeOfMutation = (int) p.random(0, 3);
-            switch(typeOfMutation){
-                case 0:
-                    awareness += awareness * 0.2f;
-                    break;
-                case 1:
-                    staminaInit += staminaInit * 0.2f;
-                    break;
-                case 2:
-                    maxVelInit += maxVelInit * 0.2f;
-                    break;
-            }
+    public void onGenomeChanged() {
+        maxVel = getMaxVelocity();
+        stamina = getStaminaInit();
+        if (traitStats != null) {
+            traitStats.replace(countedTraits, genome);
+            genome.copyTo(countedTraits);
         }
     }
 
     /**
-     * O método mutateNegative é responsável por realizar mutações negativas no Blob. Para tal, é gerado um número
-     * aleatório entre 1 e 4, que irá determinar o número de mutações a serem realizadas. De seguida, é gerado um novo
-     * número aleatório entre 0 e 3, que irá determinar o tipo de mutação a ser realizada. Dependendo do valor, a
-     * característica irá ser diminuída em 20%.
-     * @param p objeto da classe PApplet
+     * Cria um Listener que mantém as estatísticas de uma população sempre que um Blob entra ou sai do registo.
+     * As mutações dos Blobs registados são tratadas por onGenomeChanged.
+     * @param stats estatísticas da população do registo
+     * @return listener a passar a EntityRegistry.setListener
      */
-    public void mutateNegative(PApplet p){
-        int numberOfMutations = (int) p.random(1, 4);
-
-        for(int n = 0; n < numberOfMutations; n++){
-            int typeOfMutation = (int) p.random(0, 3);
-            switch(typeOfMutation){
-                case 0:
-                    awareness -= awareness * 0.2f;
-                    break;
-                case 1:
-                    staminaInit -= staminaInit * 0.2f;
-                    break;
-                case 2:
-                    maxVelInit -= maxVelInit * 0.2f;
-                    break;
+    public static EntityRegistry.Listener<Blob> traitStatsListener(TraitStats stats) {
+        return new EntityRegistry.Listener<>() {
+            @Override
+            public void onAdded(Blob blob) {
+                blob.genome.copyTo(blob.countedTraits);
+                stats.add(blob.countedTraits);
+                blob.traitStats = stats;
             }
-        }
+
+            @Override
+            public void onRemoved(Blob blob) {
+                if (blob.traitStats == stats) {
+                    stats.remove(blob.countedTraits);
+                    blob.traitStats = null;
+                }
+            }
+        };
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public float getMaxVelocity() {
+        return genome.get(Trait.MAX_VELOCITY);
+    }
+
+    /**
+     * Escreve as etiquetas com a informação do Blob por cima dele. Os textos só são refeitos quando os valores mudam.
+     * @param font fonte com as letras no atlas, entre begin e end
+     * @param px posição x do Blob em píxeis
+     * @param py posição y do Blob em píxeis
+     */
+    public abstract void displayInfo(GlyphFont font, float px, float py);
+
+    public float getStamina() {
+        return stamina;
+    }
+
+    public float getStaminaInit() {
+        return genome.get(Trait.STAMINA);
     }
 
     public abstract PVector seek(PVector target);
 
     /**
-     * Método responsável por desenhar o Blob no ecrã.
-     * Dependendo da direção em que o Blob se está a mover, a imagem é espelhada para corresponder corretamente à
-     * direção do movimento.
-     * Também desenha o campo de visao do Blob para termos uma noção do quão longe ele consegue ver.
-     * Por último, desenha a casa do Blob e verifica se o Blob está fora dos limites do ecrã. Caso estiver, transporta-o
-     * para o lado oposto do ecrã.
+     * Acrescenta a imagem do Blob ao batch de sprites. Dependendo da direção em que o Blob se está a mover, é usada a
+     * versão normal ou a versão já espelhada do sprite.
+     * @param batch batch de sprites
+     * @param plt SubPlot
+     */
+    public void displaySprite(SpriteBatch batch, SubPlot plt) {
+        if (sprite < 0) {
+            float size = (float) getHitBox();
+            sprite = batch.getAtlas().getSprite(blobImage, size, size);
+        }
+        batch.add(velocity.x > 0 ? SpriteAtlas.flipped(sprite) : sprite, plt.getPixelX(position.x),
+                plt.getPixelY(position.y));
+    }
+
+    /**
+     * Método responsável por desenhar o campo de visao do Blob para termos uma noção do quão longe ele consegue ver.
+     * A imagem do Blob é desenhada à parte, com displaySprite.
+     * A casa do Blob não é desenhada aqui, faz parte da StaticLayer, e a passagem para o lado oposto do ecrã é feita
+     * em wrapAround.
      * @param p PApplet
      * @param plt SubPlot
      */
     public void display(PApplet p, SubPlot plt) {
         p.pushStyle();
-        float[] pp = plt.getPixelCoord(position.x, position.y);
-        float[] hitBox = plt.getVectorCoord(getHitBox(), getHitBox());
-
-        p.pushMatrix();
-        p.translate(pp[0], pp[1]);
-
-        if (velocity.x > 0) {
-            p.scale(-1, 1);
-        }
-
-        p.image(blobImage, -hitBox[0]/2, -hitBox[1]/2, hitBox[0], hitBox[1]);
-        p.popMatrix();
+        float px = plt.getPixelX(position.x);
+        float py = plt.getPixelY(position.y);
 
         p.noFill();
         p.stroke(255);
         p.strokeWeight(1);
-        float[] awarenessPixelRadius = plt.getVectorCoord(awareness, 0);
-        p.circle(pp[0], pp[1], awarenessPixelRadius[0] * 2);
-
-        float[] ppHouse = plt.getPixelCoord(house.x, house.y);
-        float[] hitBoxHouse = plt.getVectorCoord(getHitBox() + 10, getHitBox() + 10);
-        p.image(blobHouse, ppHouse[0] - (hitBoxHouse[0]/2), ppHouse[1] - (hitBoxHouse[1]/2),
-                hitBoxHouse[0], hitBoxHouse[1]);
+        p.circle(px, py, plt.getVectorX(getAwareness()) * 2);
 
         p.popStyle();
+    }
 
+    /**
+     * Quando o blob sai do mapa por um dos lados volta a entrar pelo lado oposto. É chamado para todos os blobs em
+     * cada frame, mesmo para os que não são desenhados.
+     * @param plt subplot com os limites do mapa
+     */
+    public void wrapAround(SubPlot plt) {
         double[] window = plt.getWindow();
         if (position.x > window[1]) position.x = (float) window[0];
         if (position.x < window[0]) position.x = (float) window[1];
@@ -185,9 +258,9 @@ public abstract class Blob extends Mover {
     public void consumeStamina() {
         stamina -= 10f;
         t0 = System.currentTimeMillis();
-        stamina = PApplet.constrain(stamina, 0, staminaInit);
+        stamina = PApplet.constrain(stamina, 0, getStaminaInit());
 
-        if (stamina == 0 && maxVel == maxVelInit) {
+        if (stamina == 0 && maxVel == getMaxVelocity()) {
             maxVel *= 0.5f;
         }
     }
@@ -197,18 +270,18 @@ public abstract class Blob extends Mover {
      * permaneça fora das mesmas durante 2.5 segundos.
      */
     public void recoverStamina() {
-        if (stamina < staminaInit) {
+        if (stamina < getStaminaInit()) {
             t1 = System.currentTimeMillis();
             if (t1 - t0 >= 2500) {
-                stamina = staminaInit;
-                maxVel = maxVelInit;
+                stamina = getStaminaInit();
+                maxVel = getMaxVelocity();
             }
         }
     }
 
     public void resetStaminaAtNight() {
-        stamina = staminaInit;
-        maxVel = maxVelInit;
+        stamina = getStaminaInit();
+        maxVel = getMaxVelocity();
     }
 
     /**
@@ -242,7 +315,7 @@ public abstract class Blob extends Mover {
     }
 
     public float getAwareness(){
-        return awareness;
+        return genome.get(Trait.AWARENESS);
     }
 
     /**
@@ -271,6 +344,7 @@ public abstract class Blob extends Mover {
         float distance = desired.mag();
         desired.normalize();
 
+        float awareness = getAwareness();
         float desiredSpeed;
         if (distance >= awareness) {
             desiredSpeed = maxVel;
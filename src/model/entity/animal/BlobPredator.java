@@ -1,21 +1,27 @@
 package model.entity.animal;
 
-import processing.core.PApplet;
+import model.entity.resource.ResourceType;
+import model.genetics.Genome;
 import processing.core.PImage;
 import processing.core.PVector;
-import tools.SubPlot;
-
-import java.util.ArrayList;
-import java.util.List;
+import tools.GlyphFont;
+import tools.TextLabel;
 
 public class BlobPredator extends Blob {
-    private final List<Blob> inventory;
+    // só precisamos de saber quantas presas foram comidas, não das presas em si
+    private int preyCount;
+    private final TextLabel countLabel = new TextLabel("", " prey");
+
+    public BlobPredator(PVector pos, PVector vel, float mass, PImage blobImage, Genome genome, PVector house,
+                        ResourceType houseType) {
+        super(pos, vel, mass, blobImage, genome, house, houseType);
+        this.preyCount = 0;
+    }
 
-    public BlobPredator(PVector pos, PVector vel, float mass, PImage blobImage, float awareness, float stamina,
-                        float maxVelocity, PVector house, PImage houseBlob) {
-        super(pos, vel, mass, blobImage, awareness, stamina, maxVelocity, house, houseBlob);
-        this.awareness=awareness;
-        this.inventory = new ArrayList<>();
+    @Override
+    public void reset() {
+        super.reset();
+        preyCount = 0;
     }
 
     /**
@@ -36,30 +42,22 @@ public class BlobPredator extends Blob {
 
 
     @Override
-    public void displayInfo(PApplet p, SubPlot subPlotGame) {
-        p.fill(255);
-        p.textSize(15);
-        p.text(getInventory().size() + " prey", subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[0],
-                subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[1] - 20);
-        p.text("S: " + String.format("%.0f", getStamina()), subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[0],
-                subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[1] - 40);
-        p.text(String.format("%.0f", getMaxVelocity()) + " px/s", subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[0],
-                subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[1] - 60);
+    public void displayInfo(GlyphFont font, float px, float py) {
+        font.text(countLabel.get(preyCount), px, py - 20);
+        font.text(staminaLabel.get(getStamina()), px, py - 40);
+        font.text(velocityLabel.get(getMaxVelocity()), px, py - 60);
     }
 
-    public List<Blob> getInventory() {
-        return inventory;
+    public int getPreyCount() {
+        return preyCount;
     }
 
-    public void addBlob(Blob blob){
-        inventory.add(blob);
+    public void addPrey(){
+        preyCount++;
     }
 
-    public void removeNumberOfBlobs(int value) {
-        while(value != 0){
-            inventory.remove(0);
-            value--;
-        }
+    public void removeNumberOfPrey(int value) {
+        preyCount = Math.max(0, preyCount - value);
     }
 
 
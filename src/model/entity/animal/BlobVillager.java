@@ -1,38 +1,44 @@
 package model.entity.animal;
 
-import model.entity.resource.Fruit;
-import processing.core.PApplet;
+import model.entity.resource.ResourceType;
+import model.genetics.Genome;
 import processing.core.PImage;
 import processing.core.PVector;
-import tools.SubPlot;
+import tools.GlyphFont;
+import tools.TextLabel;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Esta classe representa um Blob do tipo BlobVillager. Este Blob é um Blob que tem a capacidade de armazenar frutas,
  * fugir de BlobPredators, vaguearem e reproduzir-se.
+ * O inventário não guarda as frutas em si: guarda apenas, por ordem de apanha, a posição de cada fruta compactada num
+ * long. Isto chega para contar as frutas e para recriar as frutas que o BlobVillager deixa cair quando morre.
  */
 public class BlobVillager extends Blob {
-    private final List<Fruit> inventory;
+    private long[] fruitSpots;
+    private int fruitCount;
+    private final TextLabel countLabel = new TextLabel("", " fruits");
 
-    public BlobVillager(PVector pos, PVector vel, float mass, PImage blobImage, float awareness,
-                        float stamina, float maxVelocity, PVector house, PImage blobHouse){
-        super(pos, vel, mass, blobImage, awareness, stamina, maxVelocity, house, blobHouse);
-        this.inventory = new ArrayList<>();
+    public BlobVillager(PVector pos, PVector vel, float mass, PImage blobImage, Genome genome, PVector house,
+                        ResourceType houseType){
+        super(pos, vel, mass, blobImage, genome, house, houseType);
+        this.fruitSpots = new long[4];
+        this.fruitCount = 0;
 
     }
 
     @Override
-    public void displayInfo(PApplet p, SubPlot subPlotGame) {
-        p.fill(255);
-        p.textSize(15);
-        p.text(getInventory().size() + " fruits", subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[0],
-                subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[1] - 20);
-        p.text("S: " + String.format("%.0f", getStamina()), subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[0],
-                subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[1] - 40);
-        p.text(String.format("%.0f", getMaxVelocity()) + " px/s", subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[0],
-                subPlotGame.getPixelCoord(getPosition().x, getPosition().y)[1] - 60);
+    public void reset() {
+        super.reset();
+        fruitCount = 0;
+    }
+
+    @Override
+    public void displayInfo(GlyphFont font, float px, float py) {
+        font.text(countLabel.get(fruitCount), px, py - 20);
+        font.text(staminaLabel.get(getStamina()), px, py - 40);
+        font.text(velocityLabel.get(getMaxVelocity()), px, py - 60);
     }
 
     /**
@@ -65,19 +71,50 @@ public class BlobVillager extends Blob {
         return run;
     }
 
-    public List<Fruit> getInventory() {
-        return inventory;
+    public int getFruitCount() {
+        return fruitCount;
     }
 
-    public void addFruit(Fruit fruit){
-        inventory.add(fruit);
+    /**
+     * Guarda no inventário a posição onde a fruta foi apanhada.
+     * @param x coordenada x da fruta apanhada
+     * @param y coordenada y da fruta apanhada
+     */
+    public void addFruit(float x, float y){
+        if (fruitCount == fruitSpots.length) {
+            fruitSpots = Arrays.copyOf(fruitSpots, fruitCount * 2);
+        }
+        fruitSpots[fruitCount++] = packSpot(x, y);
     }
 
+    /**
+     * Remove as frutas mais antigas do inventário.
+     * @param value número de frutas a remover
+     */
     public void removeNumberOfFruits(int value) {
-        while(value != 0){
-            inventory.remove(inventory.get(0));
-            value--;
-        }
+        int removed = Math.min(value, fruitCount);
+        System.arraycopy(fruitSpots, removed, fruitSpots, 0, fruitCount - removed);
+        fruitCount -= removed;
+    }
+
+    /**
+     * @param index posição da fruta no inventário, da mais antiga para a mais recente
+     * @return coordenada x onde a fruta foi apanhada
+     */
+    public float getFruitX(int index) {
+        return Float.intBitsToFloat((int) (fruitSpots[index] >>> 32));
+    }
+
+    /**
+     * @param index posição da fruta no inventário, da mais antiga para a mais recente
+     * @return coordenada y onde a fruta foi apanhada
+     */
+    public float getFruitY(int index) {
+        return Float.intBitsToFloat((int) fruitSpots[index]);
+    }
+
+    private static long packSpot(float x, float y) {
+        return ((long) Float.floatToRawIntBits(x) << 32) | (Float.floatToRawIntBits(y) & 0xFFFFFFFFL);
     }
 
 
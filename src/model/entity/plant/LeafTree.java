@@ -1,78 +1,84 @@
 package model.entity.plant;
 
-import model.entity.resource.Fruit;
 import processing.core.PApplet;
+import processing.core.PGraphics;
 import processing.core.PVector;
 import tools.LSystem;
-import tools.Mover;
 import tools.SubPlot;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Esta classe representa uma árvore. Esta árvore adiciona realismo à simulação, mudando de cor de acordo com
  * a estação do ano. Esta é feita através de um sistema L-System que desenha a árvore.
+ * Como as árvores nunca se movem, guardam apenas as coordenadas da sua posição.
  */
-public class LeafTree extends Mover {
-    private float len = 3.6f;
-    private float[] lenPix;
+public class LeafTree {
+    private static final float BASE_LEN = 3.6f;
+    private static final float GROWTH = 1.3f;
+
+    private final float x;
+    private final float y;
+    private final LSystem species;
+    private int age = 0;
+    private int generation = 0;
+    private float len = BASE_LEN;
+    private final float[] lenPix = new float[2];
 
-    public LeafTree(PVector pos) {
-        super(pos, new PVector(0, 0), 1f);
-        position = pos;
+    public LeafTree(PVector pos, LSystem species) {
+        this.x = pos.x;
+        this.y = pos.y;
+        this.species = species;
     }
 
-    public void setPose(float orientation, PApplet p, SubPlot plt) {
-        float[] pp = plt.getPixelCoord(position.x, position.y);
-        p.translate(pp[0], pp[1]);
-        p.rotate(-orientation);
+    public void setPose(float orientation, PGraphics g, SubPlot plt) {
+        g.translate(plt.getPixelX(x), plt.getPixelY(y));
+        g.rotate(-orientation);
     }
 
-    private void drawLeaf(PApplet p, String season) {
-        if(season.equals("summer")){
-            p.pushStyle();
-            p.noStroke();
-            p.fill(34, 139, 34);
-            p.ellipse(0, 0, lenPix[0] / 2, lenPix[1] / 2);
-            p.popStyle();
+    /**
+     * Passa um dia na vida da árvore. Nos primeiros 3 dias a árvore cresce uma geração, do dia 7 ao 9 perde uma
+     * geração e ao dia 10 morre. O tamanho dos ramos depende só da geração, por isso árvores da mesma espécie e na
+     * mesma geração são iguais e partilham a mesma imagem na TreeShapeCache.
+     * @return false se a árvore morreu
+     */
+    public boolean advanceDay() {
+        age++;
+        if (age <= 3) {
+            generation++;
+        } else if (age >= 7 && age <= 9) {
+            generation--;
+        } else if (age >= 10) {
+            return false;
         }
+        len = BASE_LEN * (float) Math.pow(GROWTH, generation);
+        species.prefetch(generation);
+        return true;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public int getGeneration() {
+        return generation;
     }
 
-    public void scaling(float s) {
-        len *= s;
+    public LSystem getSpecies() {
+        return species;
     }
 
     /**
      * Renderiza a árvore no ecrã. A árvore é desenhada com a cor branca ou castanha dependendo da estação do ano.
-     * Dependendo da sequência do sistema L, a árvore é desenhada de forma diferente podendo variar a sua forma e
-     * desenhar as folhas.
-     * @param lSys sistema de L que desenha a árvore
-     * @param p objeto PApplet para desenhar a árvore
+     * Dependendo da geração da árvore no seu LSystem, a árvore é desenhada de forma diferente podendo variar a sua
+     * forma e desenhar as folhas. A árvore só é percorrida comando a comando na primeira vez que aparece uma
+     * combinação de espécie, geração, estação e tamanho, depois é desenhada a imagem guardada na cache.
+     * @param cache cache com as imagens das árvores já desenhadas
+     * @param p objeto PApplet usado para criar as imagens novas da cache
+     * @param g superfície onde a árvore é desenhada
      * @param plt objeto SubPlot para obter as coordenadas corretas
      * @param season estação do ano para mudar a cor da árvore
      */
-    public void render(LSystem lSys, PApplet p, SubPlot plt, String season) {
-        lenPix = plt.getVectorCoord(len, len);
-
-        for(int i = 0; i < lSys.getSequence().length(); i++) {
-            char c = lSys.getSequence().charAt(i);
-            float angle = 3.14f / 4f;
-            if(c == 'F' || c == 'G') {
-                if(season.equals("winter"))
-                    p.stroke(225, 220, 220);
-                else
-                    p.stroke(139, 69, 19);
-                p.strokeWeight(3);
-                p.line(0, 0, lenPix[0], 0);
-                p.translate(lenPix[0], 0);
-            }
-            else if(c == 'f') p.translate(lenPix[0], 0);
-            else if(c == '+') p.rotate(angle);
-            else if(c == '-') p.rotate(-angle);
-            else if(c == '[') p.pushMatrix();
-            else if(c == ']') p.popMatrix();
-            else if(c == 'L') drawLeaf(p, season);
-        }
+    public void render(TreeShapeCache cache, PApplet p, PGraphics g, SubPlot plt, String season) {
+        plt.getVectorCoord(len, len, lenPix);
+        cache.draw(p, g, species, generation, lenPix, season.equals("winter"));
     }
 }
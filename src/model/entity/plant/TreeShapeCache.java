@@ -0,0 +1,184 @@
+package model.entity.plant;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.core.PImage;
+import tools.LSystem;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Guarda a imagem de uma árvore já desenhada para cada combinação de geração do LSystem, estação e comprimento dos
+ * ramos. A sequência do LSystem só é percorrida quando aparece uma combinação nova, depois todas as árvores com a
+ * mesma combinação são desenhadas com uma única imagem.
+ */
+public class TreeShapeCache {
+    private static final float ANGLE = 3.14f / 4f;
+    private static final float STROKE_WEIGHT = 3;
+    private static final int MAX_SHAPES = 32;
+
+    private final Map<Long, Shape> shapes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Shape> eldest) {
+            return size() > MAX_SHAPES;
+        }
+    };
+
+    /**
+     * Imagem de uma árvore e a posição da base da árvore dentro da imagem.
+     */
+    private static final class Shape {
+        final PImage image;
+        final float originX;
+        final float originY;
+
+        Shape(PImage image, float originX, float originY) {
+            this.image = image;
+            this.originX = originX;
+            this.originY = originY;
+        }
+    }
+
+    /**
+     * Desenha a árvore na posição atual da matriz, criando a sua imagem se a combinação ainda não existir.
+     * @param p objeto PApplet usado para criar a imagem
+     * @param target superfície onde a árvore é desenhada
+     * @param lSys LSystem (espécie) da árvore
+     * @param generation geração do LSystem a desenhar
+     * @param lenPix comprimento dos ramos em píxeis (x, y)
+     * @param winter true se a árvore deve ser desenhada com a cor de inverno
+     */
+    public void draw(PApplet p, PGraphics target, LSystem lSys, int generation, float[] lenPix, boolean winter) {
+        // o lenPix[1] é proporcional ao lenPix[0] (a escala do SubPlot não muda), por isso não entra na chave
+        long key = ((long) Float.floatToIntBits(lenPix[0]) << 32) | ((long) lSys.getId() << 12)
+                | ((long) generation << 1) | (winter ? 1 : 0);
+        Shape shape = shapes.get(key);
+        if (shape == null) {
+            shape = build(p, lSys.getCommands(generation), lenPix, winter);
+            shapes.put(key, shape);
+        }
+        target.image(shape.image, -shape.originX, -shape.originY);
+    }
+
+    public int size() {
+        return shapes.size();
+    }
+
+    public void clear() {
+        shapes.clear();
+    }
+
+    /**
+     * Percorre os comandos uma vez para saber a área ocupada pela árvore e outra para a desenhar numa imagem fora
+     * do ecrã com esse tamanho.
+     */
+    private Shape build(PApplet p, int[] commands, float[] lenPix, boolean winter) {
+        float[] bounds = measure(commands, lenPix[0], Math.abs(lenPix[0]) / 4, Math.abs(lenPix[1]) / 4);
+        float margin = STROKE_WEIGHT;
+        float originX = -bounds[0] + margin;
+        float originY = -bounds[1] + margin;
+        int width = Math.max(1, (int) Math.ceil(bounds[2] - bounds[0] + 2 * margin));
+        int height = Math.max(1, (int) Math.ceil(bounds[3] - bounds[1] + 2 * margin));
+
+        PGraphics g = p.createGraphics(width, height);
+        g.beginDraw();
+        g.translate(originX, originY);
+        render(g, commands, lenPix, winter);
+        g.endDraw();
+        PImage image = g.get();
+        g.dispose();
+        return new Shape(image, originX, originY);
+    }
+
+    /**
+     * Desenha os comandos do LSystem: cada ramo é desenhado e a tartaruga avança, as rotações rodam o número de
+     * passos do operando, push e pop guardam e repõem a posição e as folhas só aparecem no verão.
+     */
+    private static void render(PGraphics g, int[] commands, float[] lenPix, boolean winter) {
+        if (winter) {
+            g.stroke(225, 220, 220);
+        } else {
+            g.stroke(139, 69, 19);
+        }
+        g.strokeWeight(STROKE_WEIGHT);
+        g.fill(34, 139, 34);
+
+        for (int command : commands) {
+            switch (LSystem.op(command)) {
+                case LSystem.OP_DRAW:
+                    g.line(0, 0, lenPix[0], 0);
+                    g.translate(lenPix[0], 0);
+                    break;
+                case LSystem.OP_MOVE:
+                    g.translate(lenPix[0], 0);
+                    break;
+                case LSystem.OP_TURN:
+                    g.rotate(ANGLE * LSystem.operand(command));
+                    break;
+                case LSystem.OP_PUSH:
+                    g.pushMatrix();
+                    break;
+                case LSystem.OP_POP:
+                    g.popMatrix();
+                    break;
+                case LSystem.OP_LEAF:
+                    if (!winter) {
+                        g.noStroke();
+                        g.ellipse(0, 0, lenPix[0] / 2, lenPix[1] / 2);
+                        g.stroke(139, 69, 19);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Simula a tartaruga do LSystem para obter a caixa que contém todos os ramos e folhas.
+     * @return {minX, minY, maxX, maxY}
+     */
+    private static float[] measure(int[] commands, float len, float leafRadiusX, float leafRadiusY) {
+        float[] stack = new float[3 * (commands.length + 1)];
+        int top = 0;
+        float x = 0, y = 0, angle = 0;
+        float minX = 0, minY = 0, maxX = 0, maxY = 0;
+        // a folha pode estar rodada, por isso usa-se o maior raio nas duas direções
+        float leafRadius = Math.max(leafRadiusX, leafRadiusY);
+
+        for (int command : commands) {
+            switch (LSystem.op(command)) {
+                case LSystem.OP_DRAW:
+                case LSystem.OP_MOVE:
+                    x += len * (float) Math.cos(angle);
+                    y += len * (float) Math.sin(angle);
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, y);
+                    break;
+                case LSystem.OP_TURN:
+                    angle += ANGLE * LSystem.operand(command);
+                    break;
+                case LSystem.OP_PUSH:
+                    stack[top++] = x;
+                    stack[top++] = y;
+                    stack[top++] = angle;
+                    break;
+                case LSystem.OP_POP:
+                    if (top > 0) {
+                        angle = stack[--top];
+                        y = stack[--top];
+                        x = stack[--top];
+                    }
+                    break;
+                case LSystem.OP_LEAF:
+                    minX = Math.min(minX, x - leafRadius);
+                    minY = Math.min(minY, y - leafRadius);
+                    maxX = Math.max(maxX, x + leafRadius);
+                    maxY = Math.max(maxY, y + leafRadius);
+                    break;
+            }
+        }
+        return new float[]{minX, minY, maxX, maxY};
+    }
+}
@@ -0,0 +1,160 @@
+package model.entity.resource;
+
+import tools.SpriteAtlas;
+import tools.SpriteBatch;
+import tools.SubPlot;
+
+import java.util.Arrays;
+
+/**
+ * Guarda recursos estáticos (que nunca se movem) sem criar um objeto por recurso. As coordenadas ficam em arrays de
+ * floats e o tipo de cada recurso é um índice para a tabela de tipos partilhados, por isso cada recurso custa apenas
+ * 10 bytes. A remoção troca o recurso removido com o último, o que a torna O(1) mas não preserva a ordem.
+ */
+public class ResourceStore {
+    private ResourceType[] typeTable = new ResourceType[4];
+    private int typeCount;
+
+    private float[] xs;
+    private float[] ys;
+    private short[] types;
+    private int size;
+
+    private float[] pixelXs = new float[0];
+    private float[] pixelYs = new float[0];
+
+    public ResourceStore() {
+        this(64);
+    }
+
+    public ResourceStore(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        xs = new float[capacity];
+        ys = new float[capacity];
+        types = new short[capacity];
+    }
+
+    /**
+     * Adiciona um recurso ao armazém.
+     * @param type tipo do recurso
+     * @param x coordenada x no mundo
+     * @param y coordenada y no mundo
+     * @return índice do recurso, válido até à próxima remoção
+     */
+    public int add(ResourceType type, float x, float y) {
+        if (size == xs.length) {
+            int capacity = size * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        types[size] = typeIndex(type);
+        return size++;
+    }
+
+    /**
+     * Remove o recurso no índice dado, colocando o último recurso no seu lugar.
+     * @param index índice do recurso a remover
+     */
+    public void remove(int index) {
+        int last = --size;
+        xs[index] = xs[last];
+        ys[index] = ys[last];
+        types[index] = types[last];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public float getX(int index) {
+        return xs[index];
+    }
+
+    public float getY(int index) {
+        return ys[index];
+    }
+
+    public ResourceType getType(int index) {
+        return typeTable[types[index]];
+    }
+
+    /**
+     * Array com as coordenadas x dos recursos, válido entre os índices 0 e size() - 1. Serve para os kernels que
+     * trabalham diretamente sobre arrays. Não deve ser alterado.
+     * @return coordenadas x dos recursos
+     */
+    public float[] getXs() {
+        return xs;
+    }
+
+    /**
+     * Array com as coordenadas y dos recursos, válido entre os índices 0 e size() - 1. Não deve ser alterado.
+     * @return coordenadas y dos recursos
+     */
+    public float[] getYs() {
+        return ys;
+    }
+
+    /**
+     * @return a maior hitbox de todos os tipos de recursos guardados
+     */
+    public float getMaxHitBox() {
+        float max = 0;
+        for (int i = 0; i < typeCount; i++) {
+            max = Math.max(max, typeTable[i].getHitBox());
+        }
+        return max;
+    }
+
+    /**
+     * Desenha os recursos que estão dentro de uma área. As coordenadas são convertidas para píxeis de uma só vez e o
+     * sprite já redimensionado de cada tipo é obtido a partir da tabela de tipos.
+     * @param batch batch onde os sprites são acrescentados
+     * @param plt objeto SubPlot para obter as coordenadas corretas
+     * @param area área visível em píxeis {x, y, largura, altura}, os recursos cujo centro está fora dela não são
+     * desenhados
+     */
+    public void display(SpriteBatch batch, SubPlot plt, float[] area) {
+        if (pixelXs.length < size) {
+            pixelXs = new float[xs.length];
+            pixelYs = new float[xs.length];
+        }
+        plt.getPixelCoords(xs, ys, pixelXs, pixelYs, size);
+
+        float left = area[0];
+        float top = area[1];
+        float right = left + area[2];
+        float bottom = top + area[3];
+        SpriteAtlas atlas = batch.getAtlas();
+        for (int i = 0; i < size; i++) {
+            float x = pixelXs[i];
+            float y = pixelYs[i];
+            if (x < left || x > right || y < top || y > bottom) {
+                continue;
+            }
+            batch.add(typeTable[types[i]].getAtlasSprite(atlas), x, y);
+        }
+    }
+
+    private short typeIndex(ResourceType type) {
+        for (short i = 0; i < typeCount; i++) {
+            if (typeTable[i] == type) return i;
+        }
+        if (typeCount == typeTable.length) {
+            typeTable = Arrays.copyOf(typeTable, typeCount * 2);
+        }
+        typeTable[typeCount] = type;
+        return (short) typeCount++;
+    }
+}
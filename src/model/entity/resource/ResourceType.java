@@ -0,0 +1,69 @@
+package model.entity.resource;
+
+import processing.core.PImage;
+import tools.SpriteAtlas;
+import tools.SpriteBatch;
+import tools.SubPlot;
+
+/**
+ * Dados partilhados por todos os recursos estáticos do mesmo tipo (frutas, casas, ...). Em vez de cada recurso guardar
+ * a sua imagem, a sua hitbox e o seu tamanho, guarda apenas uma referência para o seu tipo (padrão Flyweight).
+ */
+public class ResourceType {
+    private final String name;
+    private final PImage sprite;
+    private final float hitBox;
+    private final float displaySize;
+    private int atlasSprite = -1;
+
+    /**
+     * @param name nome do tipo de recurso
+     * @param sprite imagem usada para desenhar o recurso
+     * @param hitBox raio da hitbox do recurso em coordenadas do mundo
+     * @param displaySize tamanho com que o recurso é desenhado em coordenadas do mundo
+     */
+    public ResourceType(String name, PImage sprite, float hitBox, float displaySize) {
+        this.name = name;
+        this.sprite = sprite;
+        this.hitBox = hitBox;
+        this.displaySize = displaySize;
+    }
+
+    /**
+     * @param atlas atlas onde está a imagem já redimensionada deste tipo
+     * @return id do sprite deste tipo no atlas (acrescentado na primeira vez)
+     */
+    public int getAtlasSprite(SpriteAtlas atlas) {
+        if (atlasSprite < 0) {
+            atlasSprite = atlas.getSprite(sprite, displaySize, displaySize);
+        }
+        return atlasSprite;
+    }
+
+    /**
+     * Desenha um recurso deste tipo centrado na posição dada.
+     * @param batch batch onde o sprite é acrescentado
+     * @param plt objeto SubPlot para obter as coordenadas corretas
+     * @param x coordenada x do recurso no mundo
+     * @param y coordenada y do recurso no mundo
+     */
+    public void display(SpriteBatch batch, SubPlot plt, float x, float y) {
+        batch.add(getAtlasSprite(batch.getAtlas()), plt.getPixelX(x), plt.getPixelY(y));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PImage getSprite() {
+        return sprite;
+    }
+
+    public float getHitBox() {
+        return hitBox;
+    }
+
+    public float getDisplaySize() {
+        return displaySize;
+    }
+}
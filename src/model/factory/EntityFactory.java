@@ -3,31 +3,51 @@ package model.factory;
 import model.entity.animal.BlobPredator;
 import model.entity.animal.BlobVillager;
 import model.entity.plant.LeafTree;
-import model.entity.resource.Fruit;
+import model.entity.resource.ResourceStore;
+import model.entity.resource.ResourceType;
+import model.genetics.Genome;
+import model.lineage.LineageStore;
 import model.world.WorldMap;
 import processing.core.PApplet;
 import processing.core.PImage;
 import processing.core.PVector;
+import tools.LSystem;
+import tools.ObjectPool;
 
 /**
  * Esta classe fábrica é responsável por criar entidades do jogo, como BlobVillagers, BlobPredators, LeafTrees e Frutas.
+ * As frutas e as casas são recursos estáticos, por isso a fábrica cria um único ResourceType para cada um e todos os
+ * recursos desse tipo partilham a mesma imagem e o mesmo tamanho.
  */
 public class EntityFactory {
     private final PImage blobVillagerImage;
     private final PImage blobPredatorImage;
-    private final PImage fruitImage;
-    private final PImage blobHouse;
+    private final ResourceType fruitType;
+    private final ResourceType houseType;
+
+    private final Genome defaultGenome = new Genome();
+    private final ObjectPool<BlobVillager> villagerPool;
+    private final ObjectPool<BlobPredator> predatorPool;
+
+    private static final int MAX_POOLED_VILLAGERS = 256;
+    private static final int MAX_POOLED_PREDATORS = 128;
 
     public EntityFactory(PImage blobVillagerImage, PImage blobPredatorImage, PImage fruitImage, PImage blobHouse) {
         this.blobVillagerImage = blobVillagerImage;
         this.blobPredatorImage = blobPredatorImage;
-        this.fruitImage = fruitImage;
-        this.blobHouse = blobHouse;
+        this.fruitType = new ResourceType("fruit", fruitImage, 1f, 30f);
+        this.houseType = new ResourceType("house", blobHouse, 40f, 40f);
+        this.villagerPool = new ObjectPool<>(MAX_POOLED_VILLAGERS, () -> new BlobVillager(new PVector(),
+                new PVector(0, 0), 1.0f, this.blobVillagerImage, defaultGenome, new PVector(), houseType));
+        this.predatorPool = new ObjectPool<>(MAX_POOLED_PREDATORS, () -> new BlobPredator(new PVector(),
+                new PVector(0, 0), 1.0f, this.blobPredatorImage, defaultGenome, new PVector(), houseType));
     }
 
     /**
      * Adiciona um BlobVillager ao mapa. Calcula a posição da sua casa e tem a possibilidade de adquirir as
-     * características do seu pai.
+     * características do seu pai, copiando o seu genoma. Sem pai, o BlobVillager recebe o genoma inicial. O id de
+     * linhagem do pai fica guardado no filho para o LineageStore registar o nascimento. O BlobVillager é reutilizado
+     * a partir do pool sempre que possível.
      * @param worldMap mapa do mundo onde vai ser inserido
      * @param p objeto PApplet
      * @param parent pai que originou o novo BlobVillager
@@ -43,21 +63,17 @@ public class EntityFactory {
             int randomY = (int) p.random(13, 26);
             position = worldMap.getCellPosition(randomX, randomY);
         }
-        PVector house = position.copy();
 
-        if (parent != null) {
-            return new BlobVillager(position, new PVector(0, 0), 1.0f, blobVillagerImage,
-                    parent.getAwareness(), parent.getStaminaInit(), parent.getMaxVelocity(), house, blobHouse);
-        } else {
-            return new BlobVillager(position, new PVector(0, 0), 1.0f, blobVillagerImage,
-                    100.0f, 2000.0f, 100.0f, house, blobHouse);
-        }
+        BlobVillager villager = villagerPool.acquire();
+        villager.init(position, position, parent != null ? parent.getGenome() : defaultGenome);
+        villager.setParentLineageId(parent != null ? parent.getLineageId() : LineageStore.NO_LINEAGE);
+        return villager;
     }
 
     /**
      * Adiciona um BlobPredator ao mapa. Calcula a posição da sua casa e tem a possibilidade de adquirir as
      * características do seu pai. Este será criado numa posição aleatória fora de um perímetro definido onde os
-     * BlobVillagers se encontram.
+     * BlobVillagers se encontram. O BlobPredator é reutilizado a partir do pool sempre que possível.
      * @param worldMap mapa do mundo onde vai ser inserido
      * @param p objeto PApplet
      * @param parent pai que originou o novo BlobPredator
@@ -80,41 +96,67 @@ public class EntityFactory {
         } else {
             position = worldMap.getCellPosition(x, y);
         }
-        PVector house = position.copy();
-
-        BlobPredator predator;
-        if(parent != null) {
-            if(initialPosition != null){
-                predator = new BlobPredator(initialPosition, new PVector(0, 0), 1.0f, blobPredatorImage,
-                        parent.getAwareness(), parent.getStaminaInit(), parent.getMaxVelocity(), initialPosition,
-                        blobHouse);
-            } else {
-                predator = new BlobPredator(position, new PVector(0, 0), 1.0f, blobPredatorImage,
-                        parent.getAwareness(), parent.getStaminaInit(), parent.getMaxVelocity(), house, blobHouse);
-            }
-        } else {
-            predator = new BlobPredator(position, new PVector(0, 0), 1.0f, blobPredatorImage,
-                    100.0f, 2000.0f, 100.0f, house, blobHouse);
-        }
+
+        BlobPredator predator = predatorPool.acquire();
+        predator.init(position, position, parent != null ? parent.getGenome() : defaultGenome);
+        predator.setParentLineageId(parent != null ? parent.getLineageId() : LineageStore.NO_LINEAGE);
         return predator;
     }
 
-    public LeafTree addFruitTree(WorldMap worldMap, PApplet p) {
+    /**
+     * Devolve ao pool um BlobVillager que morreu, para ser reutilizado no próximo nascimento.
+     * @param villager BlobVillager que já foi removido do jogo
+     */
+    public void recycle(BlobVillager villager) {
+        villagerPool.release(villager);
+    }
+
+    /**
+     * Devolve ao pool um BlobPredator que morreu, para ser reutilizado no próximo nascimento.
+     * @param predator BlobPredator que já foi removido do jogo
+     */
+    public void recycle(BlobPredator predator) {
+        predatorPool.release(predator);
+    }
+
+    public ObjectPool<BlobVillager> getVillagerPool() {
+        return villagerPool;
+    }
+
+    public ObjectPool<BlobPredator> getPredatorPool() {
+        return predatorPool;
+    }
+
+    public LeafTree addFruitTree(WorldMap worldMap, PApplet p, LSystem species) {
         PVector position = worldMap.getCellPosition((int) p.random(10, 30), (int) p.random(4, 38));
-        return new LeafTree(position);
+        return new LeafTree(position, species);
     }
 
-    public Fruit addFruit(WorldMap worldMap, PApplet p, PVector mousePosition) {
+    /**
+     * Adiciona uma fruta ao armazém de frutas numa célula aleatória do mapa ou na posição do rato.
+     * @param fruits armazém de frutas do mapa
+     * @param worldMap mapa do mundo onde vai ser inserida
+     * @param p objeto PApplet
+     * @param mousePosition posição do rato ou null para uma posição aleatória
+     */
+    public void addFruit(ResourceStore fruits, WorldMap worldMap, PApplet p, PVector mousePosition) {
         PVector position = worldMap.getCellPosition((int) p.random(33), (int) p.random(40));
-        Fruit fruit;
 
         if(mousePosition == null){
-            fruit = new Fruit(position, 1f, new PVector(0, 0), fruitImage);
+            fruits.add(fruitType, position.x, position.y);
         } else{
-            fruit = new Fruit(mousePosition, 1f, new PVector(0, 0), fruitImage);
-
+            fruits.add(fruitType, mousePosition.x, mousePosition.y);
         }
-        return fruit;
+    }
+
+    /**
+     * Adiciona uma fruta numa posição conhecida, por exemplo a partir do inventário de um BlobVillager que morreu.
+     * @param fruits armazém de frutas do mapa
+     * @param x coordenada x da fruta
+     * @param y coordenada y da fruta
+     */
+    public void addFruit(ResourceStore fruits, float x, float y) {
+        fruits.add(fruitType, x, y);
     }
 
 }
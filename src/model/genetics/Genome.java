@@ -0,0 +1,70 @@
+package model.genetics;
+
+/**
+ * Genoma de um blob: um vetor de floats com uma posição fixa para cada Trait. Todos os valores ficam sempre dentro dos
+ * limites declarados em Trait.
+ */
+public class Genome {
+    private static final Trait[] TRAITS = Trait.values();
+
+    private final float[] values = new float[Trait.COUNT];
+
+    /**
+     * Cria um genoma com os valores iniciais de todas as características.
+     */
+    public Genome() {
+        for (Trait trait : TRAITS) {
+            values[trait.ordinal()] = trait.getDefaultValue();
+        }
+    }
+
+    public float get(Trait trait) {
+        return values[trait.ordinal()];
+    }
+
+    /**
+     * @param index posição da característica (Trait.ordinal())
+     * @return valor da característica
+     */
+    public float get(int index) {
+        return values[index];
+    }
+
+    public void set(Trait trait, float value) {
+        values[trait.ordinal()] = trait.clamp(value);
+    }
+
+    /**
+     * Copia os valores de outro genoma para este, sem criar objetos novos.
+     * @param other genoma a copiar
+     */
+    public void copyFrom(Genome other) {
+        System.arraycopy(other.values, 0, values, 0, Trait.COUNT);
+    }
+
+    /**
+     * Copia os valores deste genoma para um array, indexado por Trait.ordinal().
+     * @param out array com pelo menos Trait.COUNT posições
+     */
+    public void copyTo(float[] out) {
+        System.arraycopy(values, 0, out, 0, Trait.COUNT);
+    }
+
+    /**
+     * Restaura os valores iniciais de todas as características.
+     */
+    public void setDefaults() {
+        for (Trait trait : TRAITS) {
+            values[trait.ordinal()] = trait.getDefaultValue();
+        }
+    }
+
+    /**
+     * Multiplica uma característica por um fator, respeitando os seus limites.
+     * @param index posição da característica (Trait.ordinal())
+     * @param factor fator a aplicar
+     */
+    public void scale(int index, float factor) {
+        values[index] = TRAITS[index].clamp(values[index] * factor);
+    }
+}
@@ -0,0 +1,55 @@
+package model.genetics;
+
+/**
+ * Lote de genomas mutados juntos pelo GenomeMutator. Cada operador de mutação recebe o lote inteiro de uma vez e
+ * marca os genomas que alterou, para que só esses sejam depois tratados pelo GenomeMutator.
+ * Os genomas não são copiados: com poucas características por genoma, copiá-los para arrays por característica e de
+ * volta custa mais do que a mutação. Os arrays só crescem, por isso usar a mesma instância em todos os lotes não cria
+ * objetos.
+ */
+public class GenomeBatch {
+    private Genome[] genomes = new Genome[0];
+    private boolean[] changed = new boolean[0];
+    private int count = 0;
+
+    /**
+     * Prepara o lote para count genomas, que depois têm de ser postos com set. Nenhum fica marcado como alterado.
+     * @param count número de genomas do lote
+     */
+    public void clear(int count) {
+        if (genomes.length < count) {
+            genomes = new Genome[Math.max(16, count * 2)];
+            changed = new boolean[genomes.length];
+        }
+        for (int i = count; i < this.count; i++) {
+            genomes[i] = null;
+        }
+        for (int i = 0; i < count; i++) {
+            changed[i] = false;
+        }
+        this.count = count;
+    }
+
+    public void set(int i, Genome genome) {
+        genomes[i] = genome;
+    }
+
+    public Genome get(int i) {
+        return genomes[i];
+    }
+
+    /**
+     * @param i posição do genoma no lote
+     */
+    public void markChanged(int i) {
+        changed[i] = true;
+    }
+
+    public boolean isChanged(int i) {
+        return changed[i];
+    }
+
+    public int size() {
+        return count;
+    }
+}
@@ -0,0 +1,54 @@
+package model.genetics;
+
+import model.entity.animal.Blob;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Aplica uma sequência de operadores de mutação a lotes de blobs, por exemplo a todos os blobs que nasceram numa
+ * noite. Os genomas do lote são postos num GenomeBatch, cada operador é chamado uma só vez e percorre o lote inteiro,
+ * e no fim só os blobs com genomas alterados são avisados. Cada lote tira um só número do Random do jogo e usa-o para
+ * semear um SplittableRandom, que é bastante mais rápido por não ser sincronizado entre threads.
+ */
+public class GenomeMutator {
+    private final MutationOperator[] operators;
+    private final Random random;
+    private final GenomeBatch batch = new GenomeBatch();
+
+    public GenomeMutator(Random random, MutationOperator... operators) {
+        this.random = random;
+        this.operators = operators;
+    }
+
+    /**
+     * Muta todos os blobs do lote. Os blobs cujo genoma mudou voltam a ter a stamina e a velocidade completas.
+     * @param blobs blobs a mutar
+     */
+    public void mutate(List<? extends Blob> blobs) {
+        int count = blobs.size();
+        batch.clear(count);
+        for (int i = 0; i < count; i++) {
+            batch.set(i, blobs.get(i).getGenome());
+        }
+        // um só número do Random partilhado semeia o gerador do lote, que não é sincronizado
+        SplittableRandom batchRandom = new SplittableRandom(random.nextLong());
+        for (MutationOperator operator : operators) {
+            operator.apply(batch, batchRandom);
+        }
+        for (int i = 0; i < count; i++) {
+            if (batch.isChanged(i)) {
+                blobs.get(i).onGenomeChanged();
+            }
+        }
+    }
+
+    /**
+     * Muta um único blob, como um lote de um só blob.
+     * @param blob blob a mutar
+     */
+    public void mutate(Blob blob) {
+        mutate(List.of(blob));
+    }
+}
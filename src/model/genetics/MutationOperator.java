@@ -0,0 +1,15 @@
+package model.genetics;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Operador de mutação aplicado pelo GenomeMutator a um lote de genomas de uma só vez.
+ */
+public interface MutationOperator {
+    /**
+     * Muta os genomas do lote e marca com GenomeBatch.markChanged os que foram alterados.
+     * @param batch genomas a mutar, guardados por característica
+     * @param random gerador de números aleatórios do lote
+     */
+    void apply(GenomeBatch batch, RandomGenerator random);
+}
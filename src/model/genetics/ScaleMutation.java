@@ -0,0 +1,59 @@
+package model.genetics;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Mutação que aumenta ou diminui algumas características aleatórias numa percentagem fixa. Com uma probabilidade
+ * mutationChance o genoma sofre uma mutação; essa mutação é positiva com probabilidade positiveChance e altera entre
+ * minMutations e maxMutations características (podendo repetir a mesma) em +/- factor.
+ */
+public class ScaleMutation implements MutationOperator {
+    private final float mutationChance;
+    private final float positiveChance;
+    private final float factor;
+    private final int minMutations;
+    private final int maxMutations;
+
+    public ScaleMutation(float mutationChance, float positiveChance, float factor, int minMutations,
+                         int maxMutations) {
+        this.mutationChance = mutationChance;
+        this.positiveChance = positiveChance;
+        this.factor = factor;
+        this.minMutations = minMutations;
+        this.maxMutations = maxMutations;
+    }
+
+    /**
+     * A mutação original dos blobs: metade das vezes ocorre uma mutação, positiva ou negativa com igual
+     * probabilidade, que altera entre 1 e 3 características em 20%.
+     * @return operador de mutação
+     */
+    public static ScaleMutation standard() {
+        return new ScaleMutation(0.5f, 0.5f, 0.2f, 1, 3);
+    }
+
+    /**
+     * Mutação sempre positiva, que altera entre 1 e 3 características em +20%.
+     * @return operador de mutação
+     */
+    public static ScaleMutation positive() {
+        return new ScaleMutation(1f, 1f, 0.2f, 1, 3);
+    }
+
+    @Override
+    public void apply(GenomeBatch batch, RandomGenerator random) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (random.nextFloat() > mutationChance) {
+                continue;
+            }
+
+            Genome genome = batch.get(i);
+            float scale = random.nextFloat() <= positiveChance ? 1 + factor : 1 - factor;
+            int numberOfMutations = minMutations + random.nextInt(maxMutations - minMutations + 1);
+            for (int n = 0; n < numberOfMutations; n++) {
+                genome.scale(random.nextInt(Trait.COUNT), scale);
+            }
+            batch.markChanged(i);
+        }
+    }
+}
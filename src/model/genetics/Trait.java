@@ -0,0 +1,44 @@
+package model.genetics;
+
+/**
+ * Características hereditárias dos blobs. A ordem das constantes define a posição de cada característica no vetor do
+ * Genome, por isso adicionar uma característica nova é só adicionar uma constante aqui com os seus limites e valor
+ * inicial.
+ */
+public enum Trait {
+    AWARENESS(10f, 1000f, 100f),
+    STAMINA(100f, 100000f, 2000f),
+    MAX_VELOCITY(10f, 1000f, 100f);
+
+    public static final int COUNT = values().length;
+
+    private final float min;
+    private final float max;
+    private final float defaultValue;
+
+    Trait(float min, float max, float defaultValue) {
+        this.min = min;
+        this.max = max;
+        this.defaultValue = defaultValue;
+    }
+
+    public float getMin() {
+        return min;
+    }
+
+    public float getMax() {
+        return max;
+    }
+
+    public float getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * @param value valor a limitar
+     * @return o valor dentro dos limites da característica
+     */
+    public float clamp(float value) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,88 @@
+package model.genetics;
+
+/**
+ * Estatísticas das características de uma população (por exemplo todos os blobVillagers), mantidas de forma
+ * incremental: em vez de percorrer a população sempre que é preciso uma média, guarda o número de indivíduos e, para
+ * cada Trait, a soma dos valores e a soma dos quadrados. Estas somas são atualizadas quando um indivíduo nasce,
+ * morre ou muda de genoma, por isso ler a média ou a variância é O(1) qualquer que seja o tamanho da população.
+ * As somas são guardadas em double para que somar e subtrair milhões de valores float não acumule erro visível.
+ */
+public class TraitStats {
+    private int count;
+    private final double[] sums = new double[Trait.COUNT];
+    private final double[] squares = new double[Trait.COUNT];
+
+    /**
+     * Conta um indivíduo novo.
+     * @param values valores das características do indivíduo, indexados por Trait.ordinal()
+     */
+    public void add(float[] values) {
+        count++;
+        for (int i = 0; i < Trait.COUNT; i++) {
+            double value = values[i];
+            sums[i] += value;
+            squares[i] += value * value;
+        }
+    }
+
+    /**
+     * Deixa de contar um indivíduo.
+     * @param values os mesmos valores que foram usados em add
+     */
+    public void remove(float[] values) {
+        count--;
+        for (int i = 0; i < Trait.COUNT; i++) {
+            double value = values[i];
+            sums[i] -= value;
+            squares[i] -= value * value;
+        }
+    }
+
+    /**
+     * Troca os valores de um indivíduo que já é contado, por exemplo depois de uma mutação.
+     * @param oldValues valores que estavam a ser contados
+     * @param genome genoma com os valores novos
+     */
+    public void replace(float[] oldValues, Genome genome) {
+        for (int i = 0; i < Trait.COUNT; i++) {
+            double oldValue = oldValues[i];
+            double newValue = genome.get(i);
+            sums[i] += newValue - oldValue;
+            squares[i] += newValue * newValue - oldValue * oldValue;
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return média da característica na população, ou 0 se a população estiver vazia
+     */
+    public float getMean(Trait trait) {
+        return count == 0 ? 0 : (float) (sums[trait.ordinal()] / count);
+    }
+
+    /**
+     * @return variância da característica na população, ou 0 se a população estiver vazia
+     */
+    public float getVariance(Trait trait) {
+        if (count == 0) {
+            return 0;
+        }
+        double mean = sums[trait.ordinal()] / count;
+        // o arredondamento pode dar uma variância ligeiramente negativa quando os valores são todos iguais
+        return (float) Math.max(0, squares[trait.ordinal()] / count - mean * mean);
+    }
+
+    /**
+     * Volta ao estado de uma população vazia.
+     */
+    public void clear() {
+        count = 0;
+        for (int i = 0; i < Trait.COUNT; i++) {
+            sums[i] = 0;
+            squares[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package model.lineage;
+
+import model.entity.animal.Blob;
+import model.entity.animal.BlobPredator;
+import model.genetics.Genome;
+import model.genetics.Trait;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registo de todos os nascimentos do jogo, guardado apenas em arrays de inteiros para não manter os blobs vivos.
+ * Cada nascimento ocupa um registo de tamanho fixo com o id do pai, o tick de nascimento, a espécie e o genoma.
+ * O id de linhagem de um blob é simplesmente a posição do seu registo, por isso os pais têm sempre ids menores que os
+ * filhos e qualquer registo é encontrado em O(1).
+ * Cada registo guarda também o seu primeiro filho e o irmão seguinte, por isso os filhos de um blob formam uma lista
+ * ligada e os descendentes são encontrados sem percorrer os outros registos. Estes são os únicos campos que mudam
+ * depois de um registo ser escrito: o primeiro filho do pai é atualizado em cada nascimento.
+ * Os registos são agrupados em blocos (chunks). Quando há demasiados blocos em memória os mais antigos são escritos
+ * num ficheiro temporário e voltam a ser lidos apenas quando uma consulta precisa deles.
+ */
+public class LineageStore {
+    public static final int NO_LINEAGE = -1;
+    public static final byte SPECIES_VILLAGER = 0;
+    public static final byte SPECIES_PREDATOR = 1;
+
+    private static final int PARENT = 0;
+    private static final int TICK_HIGH = 1;
+    private static final int TICK_LOW = 2;
+    private static final int SPECIES = 3;
+    private static final int FIRST_CHILD = 4;
+    private static final int NEXT_SIBLING = 5;
+    private static final int GENOME = 6;
+    private static final int RECORD_INTS = GENOME + Trait.COUNT;
+
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+    private static final int CHUNK_BYTES = CHUNK_RECORDS * RECORD_INTS * Integer.BYTES;
+    private static final int CACHE_SLOTS = 4;
+
+    private final int maxResidentChunks;
+    private int[][] chunks = new int[16][];
+    private int chunkCount;
+    private int residentChunks;
+    private int firstResidentChunk;
+    private int size;
+    private long currentTick;
+
+    private File spillPath;
+    private RandomAccessFile spillFile;
+    private final int[][] cacheData = new int[CACHE_SLOTS][];
+    private final int[] cacheChunk = new int[CACHE_SLOTS];
+    private int nextCacheSlot;
+    // buffers de todas as leituras e escritas do ficheiro, criados quando o primeiro bloco vai para disco
+    private ByteBuffer chunkBuffer;
+    private ByteBuffer fieldBuffer;
+
+    public LineageStore() {
+        this(128);
+    }
+
+    /**
+     * @param maxResidentChunks número máximo de blocos mantidos em memória antes de escrever os mais antigos em disco
+     */
+    public LineageStore(int maxResidentChunks) {
+        this.maxResidentChunks = Math.max(1, maxResidentChunks);
+        Arrays.fill(cacheChunk, -1);
+    }
+
+    /**
+     * Define o tick de simulação usado como data de nascimento dos próximos registos.
+     * @param tick tick atual da simulação
+     */
+    public void setCurrentTick(long tick) {
+        this.currentTick = tick;
+    }
+
+    /**
+     * Regista o nascimento de vários blobs de uma vez, depois de já terem sido mutados. Cada blob recebe o seu id de
+     * linhagem; o id do pai foi guardado no blob pela EntityFactory quando ele foi criado.
+     * @param blobs blobs que acabaram de nascer
+     */
+    public void recordBirths(List<? extends Blob> blobs) {
+        for (int i = 0; i < blobs.size(); i++) {
+            recordBirth(blobs.get(i));
+        }
+    }
+
+    /**
+     * Regista o nascimento de um blob e atribui-lhe o seu id de linhagem.
+     * @param blob blob que acabou de nascer
+     * @return id de linhagem do blob
+     */
+    public int recordBirth(Blob blob) {
+        byte species = blob instanceof BlobPredator ? SPECIES_PREDATOR : SPECIES_VILLAGER;
+        int id = append(blob.getParentLineageId(), currentTick, species, blob.getGenome());
+        blob.setLineageId(id);
+        return id;
+    }
+
+    /**
+     * Acrescenta um registo de nascimento.
+     * @param parentId id de linhagem do pai ou NO_LINEAGE
+     * @param birthTick tick de nascimento
+     * @param species espécie (SPECIES_VILLAGER ou SPECIES_PREDATOR)
+     * @param genome genoma do blob ao nascer
+     * @return id de linhagem do novo registo
+     */
+    public int append(int parentId, long birthTick, byte species, Genome genome) {
+        int id = size;
+        int chunkIndex = id >>> CHUNK_BITS;
+        if (chunkIndex == chunkCount) {
+            addChunk();
+        }
+
+        int[] chunk = chunks[chunkIndex];
+        int base = (id & CHUNK_MASK) * RECORD_INTS;
+        chunk[base + PARENT] = parentId;
+        chunk[base + TICK_HIGH] = (int) (birthTick >>> 32);
+        chunk[base + TICK_LOW] = (int) birthTick;
+        chunk[base + SPECIES] = species;
+        chunk[base + FIRST_CHILD] = NO_LINEAGE;
+        // o filho novo passa a ser o primeiro da lista de filhos do pai
+        chunk[base + NEXT_SIBLING] = parentId == NO_LINEAGE ? NO_LINEAGE : getFirstChild(parentId);
+        for (int trait = 0; trait < Trait.COUNT; trait++) {
+            chunk[base + GENOME + trait] = Float.floatToRawIntBits(genome.get(trait));
+        }
+
+        size++;
+        if (parentId != NO_LINEAGE) {
+            setField(parentId, FIRST_CHILD, id);
+        }
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getParent(int id) {
+        return field(id, PARENT);
+    }
+
+    public long getBirthTick(int id) {
+        return ((long) field(id, TICK_HIGH) << 32) | (field(id, TICK_LOW) & 0xFFFFFFFFL);
+    }
+
+    public byte getSpecies(int id) {
+        return (byte) field(id, SPECIES);
+    }
+
+    /**
+     * @param id id de linhagem do blob
+     * @return id do filho mais novo do blob ou NO_LINEAGE se não tiver filhos
+     */
+    public int getFirstChild(int id) {
+        return field(id, FIRST_CHILD);
+    }
+
+    /**
+     * @param id id de linhagem do blob
+     * @return id do irmão seguinte (o filho anterior do mesmo pai) ou NO_LINEAGE se não houver mais irmãos
+     */
+    public int getNextSibling(int id) {
+        return field(id, NEXT_SIBLING);
+    }
+
+    public float getTrait(int id, Trait trait) {
+        return Float.intBitsToFloat(field(id, GENOME + trait.ordinal()));
+    }
+
+    /**
+     * Devolve os antepassados de um blob, do pai até ao primeiro antepassado sem pai.
+     * @param id id de linhagem do blob
+     * @return ids de linhagem dos antepassados
+     */
+    public int[] ancestors(int id) {
+        int[] result = new int[8];
+        int count = 0;
+        for (int parent = getParent(id); parent != NO_LINEAGE; parent = getParent(parent)) {
+            if (count == result.length) {
+                result = Arrays.copyOf(result, count * 2);
+            }
+            result[count++] = parent;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Devolve todos os descendentes de um blob. As listas de filhos são percorridas em largura (uma geração de cada
+     * vez), por isso só são lidos os registos dos descendentes e o tempo é proporcional ao número de descendentes.
+     * @param id id de linhagem do blob
+     * @return ids de linhagem dos descendentes, por ordem crescente (que é a ordem de nascimento)
+     */
+    public int[] descendants(int id) {
+        int[] result = new int[8];
+        int count = 0;
+        int visited = 0;
+        for (int child = getFirstChild(id); child != NO_LINEAGE; child = getNextSibling(child)) {
+            if (count == result.length) {
+                result = Arrays.copyOf(result, count * 2);
+            }
+            result[count++] = child;
+        }
+        // os descendentes já encontrados servem de fila: os filhos de cada um são acrescentados ao fim
+        while (visited < count) {
+            for (int child = getFirstChild(result[visited++]); child != NO_LINEAGE; child = getNextSibling(child)) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = child;
+            }
+        }
+        Arrays.sort(result, 0, count);
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Apaga o ficheiro temporário usado para os blocos escritos em disco.
+     */
+    public void close() {
+        if (spillFile != null) {
+            try {
+                spillFile.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            spillFile = null;
+            spillPath.delete();
+        }
+    }
+
+    private int field(int id, int offset) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Lineage id: " + id + ", Size: " + size);
+        }
+        return chunk(id >>> CHUNK_BITS)[(id & CHUNK_MASK) * RECORD_INTS + offset];
+    }
+
+    /**
+     * Altera um campo de um registo já escrito. Se o bloco do registo já estiver em disco, o valor é escrito
+     * diretamente no ficheiro (e na cópia em cache, se houver).
+     */
+    private void setField(int id, int offset, int value) {
+        int chunkIndex = id >>> CHUNK_BITS;
+        int index = (id & CHUNK_MASK) * RECORD_INTS + offset;
+        int[] chunk = chunks[chunkIndex];
+        if (chunk != null) {
+            chunk[index] = value;
+            return;
+        }
+        for (int slot = 0; slot < CACHE_SLOTS; slot++) {
+            if (cacheChunk[slot] == chunkIndex) {
+                cacheData[slot][index] = value;
+            }
+        }
+        try {
+            fieldBuffer.clear();
+            fieldBuffer.putInt(0, value);
+            long position = (long) chunkIndex * CHUNK_BYTES + (long) index * Integer.BYTES;
+            while (fieldBuffer.hasRemaining()) {
+                position += spillFile.getChannel().write(fieldBuffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        chunks[chunkCount++] = new int[CHUNK_RECORDS * RECORD_INTS];
+        residentChunks++;
+
+        // o bloco atual nunca é escrito em disco porque ainda está a ser preenchido
+        while (residentChunks > maxResidentChunks && firstResidentChunk < chunkCount - 1) {
+            spill(firstResidentChunk++);
+        }
+    }
+
+    private int[] chunk(int chunkIndex) {
+        int[] chunk = chunks[chunkIndex];
+        if (chunk != null) {
+            return chunk;
+        }
+        for (int slot = 0; slot < CACHE_SLOTS; slot++) {
+            if (cacheChunk[slot] == chunkIndex) {
+                return cacheData[slot];
+            }
+        }
+        return load(chunkIndex);
+    }
+
+    private void spill(int chunkIndex) {
+        try {
+            if (spillFile == null) {
+                spillPath = File.createTempFile("lineage", ".bin");
+                spillPath.deleteOnExit();
+                spillFile = new RandomAccessFile(spillPath, "rw");
+                chunkBuffer = ByteBuffer.allocate(CHUNK_BYTES);
+                fieldBuffer = ByteBuffer.allocate(Integer.BYTES);
+            }
+            chunkBuffer.clear();
+            chunkBuffer.asIntBuffer().put(chunks[chunkIndex]);
+            FileChannel channel = spillFile.getChannel();
+            long position = (long) chunkIndex * CHUNK_BYTES;
+            while (chunkBuffer.hasRemaining()) {
+                position += channel.write(chunkBuffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunks[chunkIndex] = null;
+        residentChunks--;
+    }
+
+    private int[] load(int chunkIndex) {
+        int slot = nextCacheSlot;
+        nextCacheSlot = (nextCacheSlot + 1) % CACHE_SLOTS;
+        if (cacheData[slot] == null) {
+            cacheData[slot] = new int[CHUNK_RECORDS * RECORD_INTS];
+        }
+
+        try {
+            chunkBuffer.clear();
+            FileChannel channel = spillFile.getChannel();
+            long position = (long) chunkIndex * CHUNK_BYTES;
+            while (chunkBuffer.hasRemaining()) {
+                int read = channel.read(chunkBuffer, position + chunkBuffer.position());
+                if (read < 0) throw new IOException("Lineage spill file is truncated");
+            }
+            chunkBuffer.flip();
+            chunkBuffer.asIntBuffer().get(cacheData[slot]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        cacheChunk[slot] = chunkIndex;
+        return cacheData[slot];
+    }
+}
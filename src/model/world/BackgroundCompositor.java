@@ -0,0 +1,118 @@
+package model.world;
+
+import processing.core.PApplet;
+import processing.core.PImage;
+
+/**
+ * Mistura as imagens de fundo de dia e de noite de uma estação. Em vez de misturar as duas imagens em cada frame, a
+ * transição é dividida num pequeno número de níveis e cada nível é misturado uma única vez (keyframe), na primeira
+ * vez que é pedido. Enquanto o nível da transição não muda é devolvida sempre a mesma imagem, por isso o fundo só
+ * volta a ser calculado quando a transição avança para outro nível.
+ */
+public class BackgroundCompositor {
+    public static final int DEFAULT_LEVELS = 8;
+
+    private final PApplet p;
+    private final PImage day;
+    private final PImage night;
+    private final PImage[] keyframes;
+    private final int levels;
+
+    private int currentLevel = -1;
+    private PImage currentFrame;
+
+    /**
+     * @param p objeto PApplet usado para criar as imagens dos keyframes
+     * @param day imagem de fundo do dia (transição 0)
+     * @param night imagem de fundo da noite (transição 1)
+     * @param levels número de passos entre o dia e a noite
+     */
+    public BackgroundCompositor(PApplet p, PImage day, PImage night, int levels) {
+        if (levels < 1) {
+            throw new IllegalArgumentException("levels must be positive");
+        }
+        this.p = p;
+        this.day = day;
+        this.night = night;
+        this.levels = levels;
+        this.keyframes = new PImage[levels + 1];
+        day.loadPixels();
+        night.loadPixels();
+        // os extremos da transição são as próprias imagens, não precisam de ser misturados
+        keyframes[0] = day;
+        keyframes[levels] = night;
+    }
+
+    public BackgroundCompositor(PApplet p, PImage day, PImage night) {
+        this(p, day, night, DEFAULT_LEVELS);
+    }
+
+    /**
+     * @param transition valor da transição entre o dia (0) e a noite (1)
+     * @return imagem de fundo para esta transição, reutilizada enquanto o nível não mudar
+     */
+    public PImage frame(float transition) {
+        int level = level(transition);
+        if (level != currentLevel) {
+            PImage keyframe = keyframes[level];
+            if (keyframe == null) {
+                keyframe = blend(level);
+                keyframes[level] = keyframe;
+            }
+            currentLevel = level;
+            currentFrame = keyframe;
+        }
+        return currentFrame;
+    }
+
+    /**
+     * @param transition valor da transição entre o dia (0) e a noite (1)
+     * @return nível (keyframe) usado para esta transição
+     */
+    public int level(float transition) {
+        return Math.round(PApplet.constrain(transition, 0, 1) * levels);
+    }
+
+    /**
+     * @param level nível da transição a misturar
+     * @return imagem nova com a mistura
+     */
+    private PImage blend(int level) {
+        int width = Math.min(day.width, night.width);
+        int height = Math.min(day.height, night.height);
+        PImage blended = p.createImage(width, height, PApplet.RGB);
+        blend(day, night, level * 256 / levels, blended);
+        return blended;
+    }
+
+    /**
+     * Mistura duas imagens com aritmética inteira sobre os pixels empacotados: o vermelho e o azul são tratados
+     * juntos com a máscara 0xFF00FF e o verde à parte.
+     * @param a imagem com peso 256 - weight, com os pixels já carregados
+     * @param b imagem com peso weight, com os pixels já carregados
+     * @param weight peso da imagem b, de 0 a 256
+     * @param out imagem onde é escrita a mistura, não maior que a e b
+     */
+    static void blend(PImage a, PImage b, int weight, PImage out) {
+        int inverse = 256 - weight;
+        out.loadPixels();
+
+        int[] aPixels = a.pixels;
+        int[] bPixels = b.pixels;
+        int[] outPixels = out.pixels;
+        for (int y = 0; y < out.height; y++) {
+            int aRow = y * a.width;
+            int bRow = y * b.width;
+            int outRow = y * out.width;
+            for (int x = 0; x < out.width; x++) {
+                int pa = aPixels[aRow + x];
+                int pb = bPixels[bRow + x];
+                int rb = (((pa & 0xFF00FF) * inverse + (pb & 0xFF00FF) * weight) >>> 8) & 0xFF00FF;
+                int g = (((pa & 0x00FF00) * inverse + (pb & 0x00FF00) * weight) >>> 8) & 0x00FF00;
+                outPixels[outRow + x] = 0xFF000000 | rb | g;
+            }
+        }
+
+        out.updatePixels();
+    }
+}
@@ -0,0 +1,195 @@
+package model.world;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Camada de meteorologia desenhada por cima do mapa. Em vez de simular cada floco de neve como uma partícula, a neve
+ * é feita com algumas texturas que se repetem (tileable), geradas uma única vez no arranque, e que deslizam a
+ * velocidades diferentes para dar a sensação de profundidade (parallax). O custo de cada frame depende apenas do
+ * número de texturas e do tamanho da janela, não do número de flocos.
+ * As texturas são desenhadas em mosaico com image, sem tint: a intensidade é arredondada a poucos níveis e cada plano
+ * guarda uma cópia da sua textura já com a transparência do nível atual, que só é refeita quando o nível muda. Assim
+ * nenhum píxel é calculado durante o desenho, o que no Java2D é importante porque o tint obriga a recalcular a imagem.
+ * A neve é desenhada no espaço do ecrã, sem a escala da câmara: os flocos ficam sempre do mesmo tamanho e no Java2D as
+ * texturas são copiadas sem serem redimensionadas.
+ * A intensidade sobe e desce aos poucos quando a estação muda, sem criar objetos novos.
+ */
+public class WeatherLayer {
+    private static final int TILE_SIZE = 256;
+    private static final float FADE_SPEED = 0.5f; // intensidade por segundo
+    private static final int ALPHA_STEPS = 16;
+
+    private final PApplet p;
+    private final List<Layer> layers = new ArrayList<>();
+    private float intensity = 0;
+    private boolean active = false;
+    private float time = 0;
+
+    /**
+     * Uma textura que se repete e desliza com uma velocidade própria.
+     */
+    private static final class Layer {
+        final PImage texture;
+        // a textura com a transparência multiplicada pelo nível de intensidade tintedLevel
+        final PImage tinted;
+        final float speedY;
+        final float drift;
+        int tintedLevel = -1;
+        float offsetX = 0;
+        float offsetY = 0;
+
+        Layer(PApplet p, PImage texture, float speedY, float drift) {
+            this.texture = texture;
+            this.tinted = p.createImage(TILE_SIZE, TILE_SIZE, PApplet.ARGB);
+            this.speedY = speedY;
+            this.drift = drift;
+        }
+
+        /**
+         * @param level nível de intensidade, de 1 a ALPHA_STEPS
+         * @return textura com a transparência deste nível, refeita só se o nível mudou desde a última vez
+         */
+        PImage tinted(int level) {
+            if (level != tintedLevel) {
+                tinted.loadPixels();
+                int[] source = texture.pixels;
+                int[] out = tinted.pixels;
+                for (int i = 0; i < source.length; i++) {
+                    int alpha = (source[i] >>> 24) * level / ALPHA_STEPS;
+                    out[i] = (alpha << 24) | (source[i] & 0xFFFFFF);
+                }
+                tinted.updatePixels();
+                tintedLevel = level;
+            }
+            return tinted;
+        }
+    }
+
+    /**
+     * Cria a camada com três planos de neve: flocos pequenos e lentos ao fundo e flocos maiores e rápidos à frente.
+     * @param p objeto PApplet usado para criar as texturas
+     */
+    public WeatherLayer(PApplet p) {
+        this.p = p;
+        Random random = new Random(7);
+        layers.add(new Layer(p, snowTexture(p, random, 160, 1.0f, 170), 18, 6));
+        layers.add(new Layer(p, snowTexture(p, random, 80, 1.6f, 210), 35, 10));
+        layers.add(new Layer(p, snowTexture(p, random, 30, 2.6f, 240), 60, 16));
+    }
+
+    /**
+     * @param active true se deve estar a nevar (a camada aparece e desaparece aos poucos)
+     */
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    public float getIntensity() {
+        return intensity;
+    }
+
+    /**
+     * Avança o deslizamento das texturas e o fade da intensidade.
+     * @param dt tempo decorrido desde o último frame
+     */
+    public void update(float dt) {
+        time += dt;
+        if (active) {
+            intensity = Math.min(1, intensity + FADE_SPEED * dt);
+        } else {
+            intensity = Math.max(0, intensity - FADE_SPEED * dt);
+        }
+        if (intensity == 0) {
+            return;
+        }
+
+        // o vento muda de direção devagar, cada plano é empurrado de forma proporcional à sua velocidade
+        float wind = (float) Math.sin(time * 0.4f);
+        for (Layer layer : layers) {
+            layer.offsetX = wrap(layer.offsetX + wind * layer.drift * dt);
+            layer.offsetY = wrap(layer.offsetY + layer.speedY * dt);
+        }
+    }
+
+    /**
+     * Desenha os planos de neve a cobrir a área dada, sem sair dela.
+     * @param g superfície onde a neve é desenhada
+     * @param box área a cobrir {x, y, largura, altura}, nas coordenadas da matriz atual de g
+     */
+    public void draw(PGraphics g, float[] box) {
+        // a transparência é arredondada a poucos níveis para as texturas só serem refeitas quando o nível muda
+        int level = Math.round(intensity * ALPHA_STEPS);
+        if (level == 0) {
+            return;
+        }
+
+        // a área no ecrã, só a parte que está dentro da janela
+        int left = Math.max(0, Math.round(g.screenX(box[0], box[1])));
+        int top = Math.max(0, Math.round(g.screenY(box[0], box[1])));
+        int right = Math.min(g.width, Math.round(g.screenX(box[0] + box[2], box[1] + box[3])));
+        int bottom = Math.min(g.height, Math.round(g.screenY(box[0] + box[2], box[1] + box[3])));
+        if (left >= right || top >= bottom) {
+            return;
+        }
+
+        g.pushMatrix();
+        g.resetMatrix();
+        g.pushStyle();
+        g.imageMode(PApplet.CORNER);
+        g.clip(left, top, right - left, bottom - top);
+        for (Layer layer : layers) {
+            PImage texture = layer.tinted(level);
+            // posições inteiras, para que o Java2D copie as texturas sem as interpolar
+            for (int y = top - TILE_SIZE + (int) layer.offsetY; y < bottom; y += TILE_SIZE) {
+                for (int x = left - TILE_SIZE + (int) layer.offsetX; x < right; x += TILE_SIZE) {
+                    g.image(texture, x, y);
+                }
+            }
+        }
+        g.noClip();
+        g.popStyle();
+        g.popMatrix();
+    }
+
+    private static float wrap(float offset) {
+        offset %= TILE_SIZE;
+        return offset < 0 ? offset + TILE_SIZE : offset;
+    }
+
+    /**
+     * Gera uma textura transparente com flocos redondos e suaves. Os flocos que passam uma borda continuam do lado
+     * oposto, por isso a textura pode ser repetida sem se notar a junção.
+     */
+    private static PImage snowTexture(PApplet p, Random random, int flakes, float radius, int brightness) {
+        PImage texture = p.createImage(TILE_SIZE, TILE_SIZE, PApplet.ARGB);
+        texture.loadPixels();
+        int reach = (int) Math.ceil(radius + 1);
+
+        for (int f = 0; f < flakes; f++) {
+            float cx = random.nextFloat() * TILE_SIZE;
+            float cy = random.nextFloat() * TILE_SIZE;
+            float size = radius * (0.7f + random.nextFloat() * 0.6f);
+            for (int dy = -reach; dy <= reach; dy++) {
+                for (int dx = -reach; dx <= reach; dx++) {
+                    int px = Math.floorMod((int) cx + dx, TILE_SIZE);
+                    int py = Math.floorMod((int) cy + dy, TILE_SIZE);
+                    float distance = (float) Math.sqrt(dx * dx + dy * dy);
+                    float coverage = PApplet.constrain(size + 0.5f - distance, 0, 1);
+                    int alpha = (int) (coverage * brightness);
+                    int index = py * TILE_SIZE + px;
+                    if (alpha > (texture.pixels[index] >>> 24)) {
+                        texture.pixels[index] = (alpha << 24) | 0xFFFFFF;
+                    }
+                }
+            }
+        }
+        texture.updatePixels();
+        return texture;
+    }
+}
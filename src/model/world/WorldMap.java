@@ -3,8 +3,11 @@ package model.world;
 import core.Game;
 import core.InteractionManager;
 import processing.core.PApplet;
+import processing.core.PGraphics;
 import processing.core.PImage;
 import processing.core.PVector;
+import processing.opengl.PGraphicsOpenGL;
+import processing.opengl.PShader;
 import tools.SubPlot;
 
 /**
@@ -16,13 +19,21 @@ public class WorldMap {
     private final SubPlot subPlot;
     private Game game;
 
-    private final PImage background_day;
-    private final PImage background_night;
-    private final PImage background_winter;
-    private final PImage background_night_winter;
+    private final BackgroundCompositor summerBackground;
+    private final BackgroundCompositor winterBackground;
+    private final PApplet p;
+    // mistura das duas estações no renderer Java2D, só existe enquanto a estação está a mudar
+    private PImage seasonFrame;
+    private int seasonFrameKey = -1;
+    private PShader backgroundShader;
+    private PImage shaderCanvas;
 
     private final int nRows, nColumns;
     private float transitionDay;
+    private float seasonFade;
+
+    // número de passos entre o verão e o inverno no renderer Java2D
+    private static final int SEASON_LEVELS = 8;
 
     /**
      * Esta classe representa o mapa do mundo onde se encontra o ecossistema do jogo.
@@ -37,11 +48,24 @@ public class WorldMap {
         this.nColumns = nColumns;
         this.grid = new Cell[nRows][nColumns];
         this.subPlot = subPlot;
+        this.p = p;
         transitionDay = 0;
-        background_day= p.loadImage("data/background.png");
-        background_night= p.loadImage("data/background_night.png");
-        background_winter= p.loadImage("data/background_Winter.png");
-        background_night_winter= p.loadImage("data/background_night_winter.png");
+        PImage summerDay = p.loadImage("data/background.png");
+        PImage summerNight = p.loadImage("data/background_night.png");
+        PImage winterDay = p.loadImage("data/background_Winter.png");
+        PImage winterNight = p.loadImage("data/background_night_winter.png");
+        summerBackground = new BackgroundCompositor(p, summerDay, summerNight);
+        winterBackground = new BackgroundCompositor(p, winterDay, winterNight);
+
+        // com o renderer OpenGL a mistura das quatro imagens é feita na placa gráfica por um fragment shader
+        if (p.g instanceof PGraphicsOpenGL) {
+            backgroundShader = p.loadShader("data/background_blend.glsl");
+            backgroundShader.set("summerDay", summerDay);
+            backgroundShader.set("summerNight", summerNight);
+            backgroundShader.set("winterDay", winterDay);
+            backgroundShader.set("winterNight", winterNight);
+            shaderCanvas = summerDay;
+        }
 
         // para cada linha e coluna criamos uma celula com a sua posição e tamanho de 25px por 25px
         for(int row = 0; row < nRows; row++) {
@@ -75,15 +99,40 @@ public class WorldMap {
         return null;
     }
 
-    public void draw(PApplet p) {
+    /**
+     * @return valor que só muda quando a imagem de fundo desenhada por draw muda
+     */
+    public long getBackgroundStamp() {
+        if (backgroundShader != null) {
+            return ((long) Float.floatToIntBits(transitionDay) << 32)
+                    | (Float.floatToIntBits(seasonFade) & 0xFFFFFFFFL);
+        }
+        return ((long) seasonLevel() << 32) | summerBackground.level(transitionDay);
+    }
+
+    /**
+     * @return nível da mudança de estação no renderer Java2D, de 0 (verão) a SEASON_LEVELS (inverno)
+     */
+    private int seasonLevel() {
+        return Math.round(seasonFade * SEASON_LEVELS);
+    }
+
+    /**
+     * Desenha o fundo do mapa.
+     * @param g superfície onde o fundo é desenhado (normalmente a StaticLayer)
+     */
+    public void draw(PGraphics g) {
         float[] box = subPlot.getBoundingBox(); // as fronteiras do mapa
-        PImage background;
-        if(game.getSeason().equals("winter")){
-            background = blendBackground(p, background_winter, background_night_winter);
-        } else{
-            background = blendBackground(p, background_day, background_night);
+        if (backgroundShader != null) {
+            backgroundShader.set("transition", transitionDay);
+            backgroundShader.set("winter", seasonFade);
+            g.shader(backgroundShader);
+            g.image(shaderCanvas, box[0], box[1], box[2], box[3]);
+            g.resetShader();
+            return;
         }
-        p.image(background, box[0], box[1], box[2], box[3]);
+
+        g.image(background(), box[0], box[1], box[2], box[3]);
 
        /* for (int row = 0; row < nRows; row++) {
             for (int col = 0; col < nColumns; col++) {
@@ -98,31 +147,36 @@ public class WorldMap {
     }
 
     /**
-     * Para ocorrer uma transição entre o dia e a noite, é necessário fazer um blend entre as duas imagens de fundo.
-     * @param p objeto PApplet
-     * @param background1 imagem de fundo do dia
-     * @param background2 imagem de fundo da noite
-     * @return imagem de fundo com a transição entre o dia e a noite
+     * Imagem de fundo no renderer Java2D. Enquanto a estação está a mudar, os fundos das duas estações são misturados
+     * pelo nível da mudança; cada mistura só é calculada quando o nível do dia ou da estação muda.
+     * @return imagem de fundo para a transição e a estação atuais
      */
-    private PImage blendBackground(PApplet p, PImage background1, PImage background2) {
-        PImage blendedImage = p.createImage(background1.width, background1.height, PApplet.RGB);
-        blendedImage.loadPixels();
-        background1.loadPixels();
-        background2.loadPixels();
-
-        for (int i = 0; i < blendedImage.pixels.length; i++) {
-            int dayColor = background1.pixels[i];
-            int nightColor = background2.pixels[i];
-
-            float r = PApplet.lerp(p.red(dayColor), p.red(nightColor), transitionDay);
-            float g = PApplet.lerp(p.green(dayColor), p.green(nightColor), transitionDay);
-            float b = PApplet.lerp(p.blue(dayColor), p.blue(nightColor), transitionDay);
-
-            blendedImage.pixels[i] = p.color(r, g, b);
+    private PImage background() {
+        int season = seasonLevel();
+        if (season == 0) {
+            seasonFrame = null;
+            seasonFrameKey = -1;
+            return summerBackground.frame(transitionDay);
+        }
+        if (season == SEASON_LEVELS) {
+            seasonFrame = null;
+            seasonFrameKey = -1;
+            return winterBackground.frame(transitionDay);
         }
 
-        blendedImage.updatePixels();
-        return blendedImage;
+        int key = season * (BackgroundCompositor.DEFAULT_LEVELS + 1) + summerBackground.level(transitionDay);
+        if (key != seasonFrameKey) {
+            PImage summer = summerBackground.frame(transitionDay);
+            PImage winter = winterBackground.frame(transitionDay);
+            if (seasonFrame == null) {
+                int width = Math.min(summer.width, winter.width);
+                int height = Math.min(summer.height, winter.height);
+                seasonFrame = p.createImage(width, height, PApplet.RGB);
+            }
+            BackgroundCompositor.blend(summer, winter, season * 256 / SEASON_LEVELS, seasonFrame);
+            seasonFrameKey = key;
+        }
+        return seasonFrame;
     }
 
     /**
@@ -136,5 +190,13 @@ public class WorldMap {
         } else {
             transitionDay = PApplet.min(1, transitionDay + transitionSpeed);
         }
+
+        // a mudança de estação também é gradual
+        float seasonSpeed = 0.02f;
+        if (game.getSeason().equals("winter")) {
+            seasonFade = PApplet.min(1, seasonFade + seasonSpeed);
+        } else {
+            seasonFade = PApplet.max(0, seasonFade - seasonSpeed);
+        }
     }
 }
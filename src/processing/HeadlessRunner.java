@@ -0,0 +1,60 @@
+package processing;
+
+import core.GameManager;
+import processing.awt.PGraphicsJava2D;
+import processing.core.PApplet;
+import tools.FrameCapture;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Corre o jogo sem janela, desenhando numa imagem fora do ecrã, e grava os frames com a FrameCapture. Serve para
+ * gravar time-lapses de simulações longas numa máquina sem ecrã: cada frame avança a simulação com um passo fixo e o
+ * ciclo corre tão depressa quanto possível.
+ * Uso: java -Djava.awt.headless=true processing.HeadlessRunner [frames] [intervalo] [pasta] [png|raw]
+ * Os ficheiros de imagem (data/...) são procurados a partir da pasta atual.
+ */
+public class HeadlessRunner {
+    private static final int WIDTH = 1000;
+    private static final int HEIGHT = 800;
+    private static final float DT = 1 / 60f;
+
+    public static void main(String[] args) throws InterruptedException {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 3600;
+        int interval = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        File directory = new File(args.length > 2 ? args[2] : "capture/headless");
+        FrameCapture.Format format = args.length > 3 && args[3].equalsIgnoreCase("raw")
+                ? FrameCapture.Format.RAW : FrameCapture.Format.PNG;
+
+        PApplet p = new PApplet();
+        p.sketchPath(new File("").getAbsolutePath());
+        p.width = WIDTH;
+        p.height = HEIGHT;
+        PGraphicsJava2D g = new PGraphicsJava2D();
+        g.setParent(p);
+        g.setPrimary(false);
+        g.setSize(WIDTH, HEIGHT);
+        p.g = g;
+
+        GameManager gameManager = new GameManager();
+        g.beginDraw();
+        gameManager.setup(p);
+        g.endDraw();
+
+        FrameCapture capture = new FrameCapture(directory, g.pixelWidth, g.pixelHeight, interval, format,
+                Runtime.getRuntime().availableProcessors() > 2 ? 2 : 1, 4);
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            g.beginDraw();
+            gameManager.draw(p, DT);
+            g.endDraw();
+            capture.capture(g, gameManager.getTick());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        capture.closeAndWait(1, TimeUnit.MINUTES);
+
+        System.out.printf("%d frames em %.1f s (%.1f frames/s), %d gravados em %s, %.0f ms à espera de buffers%n",
+                frames, seconds, frames / seconds, capture.getWritten(), directory, capture.getWaitMillis());
+    }
+}
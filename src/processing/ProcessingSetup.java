@@ -1,30 +1,33 @@
 package processing;
 
+import core.Dashboard;
 import core.GameManager;
-import core.GraphManager;
 import processing.core.PApplet;
+import processing.event.MouseEvent;
 
 /**
- * Esta classe é responsável por criar a janela do jogo e as janelas dos gráficos com as estatísticas do jogo.
+ * Esta classe é responsável por criar a janela do jogo e a janela do Dashboard com os gráficos das estatísticas do
+ * jogo.
  */
 public class ProcessingSetup extends PApplet {
 
+    private static ProcessingSetup gameWindow;
+
     private GameManager gameManager;
-    private GraphManager graphManager;
+    private Dashboard dashboard;
 
     private int lastUpdateTime;
 
     private final boolean isGameWindow;
-    private final int windowType;
 
     /**
-     * Aqui criamos a janela do jogo e as janelas dos gráficos. A janela do jogo é criada com dimensões de 1000x800
-     * e as janelas dos gráficos são criadas com dimensões de 400x400 onde cada uma representa um gráfico diferente.
-     * Para tal, cada janela de gráfico vai ter um valor int para determinar a sua função.
+     * Aqui criamos a janela do jogo e a janela do Dashboard. A janela do jogo é criada com dimensões de 1000x800 e a
+     * do Dashboard com 800x800, onde cada gráfico (população, campo de visão, velocidade máxima, stamina e reutilização
+     * dos pools de blobs) é um painel da grelha. Todos os gráficos partilham a mesma janela e a mesma thread de desenho.
      * @param args Argumentos passados para o método main.
      */
     public static void main(String[] args) {
-        ProcessingSetup gameWindow = new ProcessingSetup(true, -1);
+        gameWindow = new ProcessingSetup(true);
         PApplet.runSketch(new String[]{"Game Manager"}, gameWindow);
         gameWindow.setWindowTitle("Game Window");
 
@@ -34,43 +37,39 @@ public class ProcessingSetup extends PApplet {
             e.printStackTrace();
         }
 
-        for (int i = 0; i < 4; i++) {
-            ProcessingSetup graphWindow = new ProcessingSetup(false, i);
-            PApplet.runSketch(new String[]{"Graph Manager " + i}, graphWindow);
-
-            switch (i) {
-                case 0:
-                    graphWindow.setWindowTitle("Population ao Longo do Tempo");
-                    break;
-                case 1:
-                    graphWindow.setWindowTitle("Campo de Visão");
-                    break;
-                case 2:
-                    graphWindow.setWindowTitle("Velocidade Máxima");
-                    break;
-                case 3:
-                    graphWindow.setWindowTitle("Stamina");
-                    break;
-            }
-        }
+        ProcessingSetup dashboardWindow = new ProcessingSetup(false);
+        PApplet.runSketch(new String[]{"Dashboard"}, dashboardWindow);
+        dashboardWindow.setWindowTitle("Estatísticas");
     }
 
     public void setWindowTitle(String title) {
         surface.setTitle(title);
     }
 
-    public ProcessingSetup(boolean isGameWindow, int windowType) {
+    public ProcessingSetup(boolean isGameWindow) {
         this.isGameWindow = isGameWindow;
-        this.windowType = windowType;
     }
 
     @Override
     public void settings() {
         if (isGameWindow) {
-            size(1000, 800);
+            size(1000, 800, gameRenderer());
         } else {
-            size(400, 400);
+            size(800, 800);
+        }
+    }
+
+    /**
+     * O jogo usa o renderer Java2D. O caminho OpenGL (P2D) ainda não foi experimentado numa placa gráfica, por isso
+     * só é ativado pela propriedade ecosim.renderer e não faz parte das opções documentadas do jogo.
+     * @return renderer a usar na janela do jogo
+     */
+    private static String gameRenderer() {
+        String renderer = System.getProperty("ecosim.renderer", JAVA2D);
+        if (renderer.equalsIgnoreCase("p2d") || renderer.equalsIgnoreCase("opengl")) {
+            return P2D;
         }
+        return JAVA2D;
     }
 
     @Override
@@ -79,14 +78,35 @@ public class ProcessingSetup extends PApplet {
             gameManager = new GameManager();
             gameManager.setup(this);
         } else {
-            graphManager = new GraphManager(windowType);
-            graphManager.setup(this);
+            dashboard = new Dashboard();
+            dashboard.setup(this);
         }
 
 
         lastUpdateTime = millis();
     }
 
+    /**
+     * Fechar qualquer uma das janelas termina a aplicação. O fecho é sempre pedido à janela do jogo, que chama o
+     * dispose na sua própria thread de desenho antes de a aplicação sair.
+     */
+    @Override
+    public void exit() {
+        if (!isGameWindow && gameWindow != null) {
+            gameWindow.exit();
+        } else {
+            super.exit();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (isGameWindow && gameManager != null) {
+            gameManager.dispose();
+        }
+        super.dispose();
+    }
+
     @Override
     public void draw() {
         int now = millis();
@@ -97,7 +117,7 @@ public class ProcessingSetup extends PApplet {
             gameManager.draw(this, deltaT);
 
         } else {
-            graphManager.draw(this, deltaT);
+            dashboard.draw(this, deltaT);
         }
 
     }
@@ -107,7 +127,7 @@ public class ProcessingSetup extends PApplet {
         if (isGameWindow) {
             gameManager.keyReleased(this);
         } else {
-            graphManager.keyReleased(this);
+            dashboard.keyReleased(this);
         }
     }
 
@@ -116,17 +136,24 @@ public class ProcessingSetup extends PApplet {
         if (isGameWindow) {
             gameManager.mousePressed(this);
         } else {
-            graphManager.mousePressed(this);
+            dashboard.mousePressed(this);
         }
     }
 
 
+    @Override
+    public void mouseWheel(MouseEvent event) {
+        if (isGameWindow) {
+            gameManager.mouseWheel(this, event.getCount());
+        }
+    }
+
     @Override
     public void keyPressed() {
         if (isGameWindow) {
             gameManager.keyPressed(this);
         } else {
-            graphManager.keyPressed(this);
+            dashboard.keyPressed(this);
         }
     }
 }
\ No newline at end of file
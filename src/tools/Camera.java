@@ -0,0 +1,159 @@
+package tools;
+
+import processing.awt.PGraphicsJava2D;
+import processing.core.PGraphics;
+
+import java.awt.RenderingHints;
+
+/**
+ * Câmara por cima do SubPlot do jogo. O SubPlot continua a converter as coordenadas do mundo para píxeis como se o
+ * mapa inteiro estivesse no ecrã e a câmara aplica depois um zoom e uma translação a esses píxeis. Assim a simulação
+ * e todo o código de desenho continuam a usar o mesmo SubPlot, só a matriz de desenho muda.
+ * A câmara nunca mostra nada fora do mapa: o zoom mínimo é 1 (o mapa inteiro) e o centro é limitado para que a vista
+ * fique sempre dentro do mapa.
+ */
+public class Camera {
+    private static final float MIN_ZOOM = 1;
+    private static final float MAX_ZOOM = 8;
+    // fração da distância ao alvo percorrida por segundo quando a câmara segue um blob
+    private static final float FOLLOW_SPEED = 6;
+
+    private final float width;
+    private final float height;
+    private float zoom = 1;
+    private float centerX;
+    private float centerY;
+    private Object interpolation;
+
+    /**
+     * @param width largura da área do jogo em píxeis
+     * @param height altura da área do jogo em píxeis
+     */
+    public Camera(float width, float height) {
+        this.width = width;
+        this.height = height;
+        reset();
+    }
+
+    /**
+     * Volta a mostrar o mapa inteiro.
+     */
+    public void reset() {
+        zoom = 1;
+        centerX = width / 2;
+        centerY = height / 2;
+    }
+
+    /**
+     * Muda o zoom mantendo fixo o ponto do ecrã (sx, sy), por exemplo o ponto debaixo do rato.
+     * @param factor fator a multiplicar pelo zoom atual
+     * @param sx coordenada x do ponto fixo no ecrã
+     * @param sy coordenada y do ponto fixo no ecrã
+     */
+    public void zoom(float factor, float sx, float sy) {
+        float bx = toBaseX(sx);
+        float by = toBaseY(sy);
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        centerX = bx - (sx - width / 2) / zoom;
+        centerY = by - (sy - height / 2) / zoom;
+        clamp();
+    }
+
+    /**
+     * Move a câmara uma distância dada em píxeis do ecrã.
+     */
+    public void pan(float dx, float dy) {
+        centerX += dx / zoom;
+        centerY += dy / zoom;
+        clamp();
+    }
+
+    /**
+     * Aproxima o centro da câmara de um ponto, de forma suave.
+     * @param bx coordenada x do ponto em píxeis do SubPlot
+     * @param by coordenada y do ponto em píxeis do SubPlot
+     * @param dt tempo decorrido desde o último frame
+     */
+    public void follow(float bx, float by, float dt) {
+        float t = Math.min(1, FOLLOW_SPEED * dt);
+        centerX += (bx - centerX) * t;
+        centerY += (by - centerY) * t;
+        clamp();
+    }
+
+    /**
+     * Aplica a câmara à matriz de desenho. Tem de ser seguido de end.
+     * No Java2D, com zoom, as imagens passam a ser ampliadas sem interpolação: a interpolação bicúbica por omissão
+     * demora dezenas de milissegundos a ampliar a camada estática do mapa, sem interpolação demora 2 ou 3.
+     */
+    public void begin(PGraphics g) {
+        g.pushMatrix();
+        g.translate(width / 2, height / 2);
+        g.scale(zoom);
+        g.translate(-centerX, -centerY);
+        if (zoom > 1 && g instanceof PGraphicsJava2D) {
+            PGraphicsJava2D java2d = (PGraphicsJava2D) g;
+            interpolation = java2d.g2.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+            java2d.g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        }
+    }
+
+    public void end(PGraphics g) {
+        if (interpolation != null) {
+            ((PGraphicsJava2D) g).g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            interpolation = null;
+        }
+        g.popMatrix();
+    }
+
+    /**
+     * @return coordenada x em píxeis do SubPlot de um ponto do ecrã
+     */
+    public float toBaseX(float sx) {
+        return centerX + (sx - width / 2) / zoom;
+    }
+
+    /**
+     * @return coordenada y em píxeis do SubPlot de um ponto do ecrã
+     */
+    public float toBaseY(float sy) {
+        return centerY + (sy - height / 2) / zoom;
+    }
+
+    /**
+     * @return coordenada x no ecrã de um ponto em píxeis do SubPlot
+     */
+    public float toScreenX(float bx) {
+        return (bx - centerX) * zoom + width / 2;
+    }
+
+    /**
+     * @return coordenada y no ecrã de um ponto em píxeis do SubPlot
+     */
+    public float toScreenY(float by) {
+        return (by - centerY) * zoom + height / 2;
+    }
+
+    /**
+     * @return área visível em píxeis do SubPlot, no formato do getBoundingBox do SubPlot {x, y, largura, altura}
+     */
+    public float[] getViewBox(float[] out) {
+        out[0] = centerX - width / (2 * zoom);
+        out[1] = centerY - height / (2 * zoom);
+        out[2] = width / zoom;
+        out[3] = height / zoom;
+        return out;
+    }
+
+    public float getZoom() {
+        return zoom;
+    }
+
+    private void clamp() {
+        float halfWidth = width / (2 * zoom);
+        float halfHeight = height / (2 * zoom);
+        centerX = Math.max(halfWidth, Math.min(width - halfWidth, centerX));
+        centerY = Math.max(halfHeight, Math.min(height - halfHeight, centerY));
+    }
+}
@@ -0,0 +1,364 @@
+package tools;
+
+import processing.core.PGraphics;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Grava frames do jogo numa sequência de imagens sem parar a thread de desenho. Em cada captura os píxeis do frame
+ * são só copiados para um buffer de um pool fixo; a codificação em PNG (ou a escrita dos píxeis em bruto) e a escrita
+ * no disco são feitas por um pequeno grupo de threads em segundo plano.
+ * O número de buffers limita os frames à espera de serem escritos: quando estão todos ocupados, a captura seguinte
+ * espera que um fique livre (backpressure) em vez de acumular frames em memória.
+ * Os frames são capturados de N em N ticks da simulação, por isso a sequência mostra a mesma evolução qualquer que
+ * seja a velocidade a que a simulação corre.
+ * Nos renderers OpenGL os píxeis são lidos da placa gráfica de forma assíncrona com um PixelReadback, e só mais
+ * tarde copiados para um buffer; nos outros (ou se o driver não o suportar) é usado o loadPixels.
+ */
+public class FrameCapture {
+    /**
+     * PNG para ver diretamente, RAW para gravar mais depressa (píxeis ARGB de 32 bits, big-endian, linha a linha).
+     */
+    public enum Format { PNG, RAW }
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int READBACK_SLOTS = 3;
+
+    private final File directory;
+    private final Format format;
+    private final int interval;
+    private final int width;
+    private final int height;
+
+    private final BlockingQueue<Frame> free;
+    private final ExecutorService writers;
+    private final PixelReadback.Sink gpuFrames = this::submitRgba;
+    private PixelReadback readback;
+    private boolean readbackChecked = false;
+
+    private long lastTick = -1;
+    private long captured = 0;
+    private long waitNanos = 0;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Buffer de um frame, reutilizado entre capturas.
+     */
+    private static final class Frame {
+        final int[] pixels;
+        // píxeis RGBA lidos da placa gráfica, convertidos para pixels pela thread que escreve o frame
+        ByteBuffer rgba;
+        boolean fromGpu;
+        ByteBuffer raw;
+        byte[] row;
+        Deflater deflater;
+        Bytes compressed;
+        long tick;
+
+        Frame(int width, int height) {
+            pixels = new int[width * height];
+        }
+    }
+
+    /**
+     * @param directory pasta onde os frames são gravados (é criada se não existir)
+     * @param width largura dos frames em píxeis
+     * @param height altura dos frames em píxeis
+     * @param interval grava um frame de interval em interval ticks
+     * @param format formato dos ficheiros
+     * @param workers número de threads que escrevem os frames
+     * @param buffers número de frames que podem estar à espera de ser escritos
+     */
+    public FrameCapture(File directory, int width, int height, int interval, Format format, int workers,
+                        int buffers) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Não foi possível criar a pasta " + directory);
+        }
+        this.directory = directory;
+        this.width = width;
+        this.height = height;
+        this.interval = Math.max(1, interval);
+        this.format = format;
+
+        free = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            free.add(new Frame(width, height));
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "frame-capture-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Captura o frame desenhado em g, se o tick for múltiplo do intervalo e ainda não tiver sido capturado.
+     * Tem de ser chamado em todos os frames na thread de desenho, depois de o frame estar desenhado: nos renderers
+     * OpenGL é também aqui que são recolhidas as leituras pedidas em frames anteriores.
+     * @param g superfície com o frame
+     * @param tick tick atual da simulação
+     * @return true se o frame foi capturado
+     */
+    public boolean capture(PGraphics g, long tick) {
+        if (!readbackChecked) {
+            readback = PixelReadback.create(g, width, height, READBACK_SLOTS);
+            readbackChecked = true;
+        }
+        if (readback != null) {
+            readback.completeFinished(gpuFrames);
+        }
+        if (tick == lastTick || tick % interval != 0) {
+            return false;
+        }
+
+        if (readback != null) {
+            readback.start(tick, gpuFrames);
+        } else {
+            g.loadPixels();
+            if (g.pixels.length != width * height) {
+                throw new IllegalStateException("O frame tem " + g.pixels.length + " píxeis, eram esperados "
+                        + width * height);
+            }
+            Frame frame = takeFrame();
+            if (frame == null) {
+                return false;
+            }
+            System.arraycopy(g.pixels, 0, frame.pixels, 0, frame.pixels.length);
+            frame.fromGpu = false;
+            submit(frame, tick);
+        }
+        lastTick = tick;
+        captured++;
+        return true;
+    }
+
+    /**
+     * Deixa de aceitar frames e espera que os frames capturados sejam todos escritos. Nos renderers OpenGL tem de
+     * ser chamado na thread de desenho, porque as leituras ainda em curso na placa gráfica são recolhidas aqui.
+     * @return false se o tempo acabou antes de todos os frames estarem escritos
+     */
+    public boolean closeAndWait(long timeout, TimeUnit unit) throws InterruptedException {
+        if (readback != null) {
+            try {
+                readback.close(gpuFrames);
+            } catch (RuntimeException e) {
+                // sem o contexto OpenGL ativo as leituras em curso perdem-se
+                failed.addAndGet(readback.getPending());
+            }
+            readback = null;
+        }
+        writers.shutdown();
+        return writers.awaitTermination(timeout, unit);
+    }
+
+    public long getCaptured() {
+        return captured;
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return tempo total, em milissegundos, que a thread de desenho esperou por um buffer livre
+     */
+    public double getWaitMillis() {
+        return waitNanos / 1e6;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Tira um buffer livre do pool, esperando que um frame acabe de ser escrito se estiverem todos ocupados.
+     * @return buffer livre, ou null se a thread foi interrompida enquanto esperava
+     */
+    private Frame takeFrame() {
+        Frame frame = free.poll();
+        if (frame == null) {
+            long start = System.nanoTime();
+            try {
+                frame = free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            waitNanos += System.nanoTime() - start;
+        }
+        return frame;
+    }
+
+    private void submit(Frame frame, long tick) {
+        frame.tick = tick;
+        writers.execute(() -> write(frame));
+    }
+
+    /**
+     * Recebe uma leitura terminada do PixelReadback. Os bytes são só copiados; a conversão para píxeis ARGB é feita
+     * pela thread que escreve o frame.
+     */
+    private void submitRgba(ByteBuffer rgba, long tick) {
+        Frame frame = takeFrame();
+        if (frame == null) {
+            failed.incrementAndGet();
+            return;
+        }
+        if (frame.rgba == null) {
+            frame.rgba = ByteBuffer.allocate(width * height * 4);
+        }
+        frame.rgba.clear();
+        frame.rgba.put(rgba);
+        frame.fromGpu = true;
+        submit(frame, tick);
+    }
+
+    /**
+     * Converte os bytes RGBA lidos da placa gráfica em píxeis ARGB, invertendo a ordem das linhas (o OpenGL devolve
+     * primeiro a linha de baixo).
+     */
+    private void unpackRgba(Frame frame) {
+        byte[] rgba = frame.rgba.array();
+        for (int y = 0; y < height; y++) {
+            int src = (height - 1 - y) * width * 4;
+            int dst = y * width;
+            for (int x = 0; x < width; x++, src += 4) {
+                frame.pixels[dst + x] = 0xFF000000 | (rgba[src] & 0xFF) << 16 | (rgba[src + 1] & 0xFF) << 8
+                        | (rgba[src + 2] & 0xFF);
+            }
+        }
+    }
+
+    private void write(Frame frame) {
+        try {
+            if (frame.fromGpu) {
+                unpackRgba(frame);
+            }
+            String name = String.format("frame_%08d", frame.tick);
+            if (format == Format.PNG) {
+                writePng(frame, new File(directory, name + ".png"));
+            } else {
+                writeRaw(frame, new File(directory, name + ".raw"));
+            }
+            written.incrementAndGet();
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            e.printStackTrace();
+        } finally {
+            free.add(frame);
+        }
+    }
+
+    /**
+     * Escreve o PNG diretamente, sem o ImageIO: cada linha usa o filtro Sub do PNG (diferença para o píxel à
+     * esquerda), que funciona bem nas zonas lisas do mapa, e é comprimida com o nível mais rápido do Deflater. Os
+     * ficheiros ficam um pouco maiores do que com o ImageIO, mas a codificação é várias vezes mais rápida.
+     */
+    private void writePng(Frame frame, File file) throws IOException {
+        if (frame.row == null) {
+            frame.row = new byte[1 + width * 3];
+            frame.deflater = new Deflater(Deflater.BEST_SPEED);
+            frame.compressed = new Bytes();
+        }
+        byte[] row = frame.row;
+        Deflater deflater = frame.deflater;
+        deflater.reset();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+                1 << 16))) {
+            out.write(PNG_SIGNATURE);
+            Bytes header = new Bytes();
+            DataOutputStream headerData = new DataOutputStream(header);
+            headerData.writeInt(width);
+            headerData.writeInt(height);
+            // 8 bits por canal, RGB, compressão e filtros normais, sem entrelaçamento
+            headerData.write(new byte[]{8, 2, 0, 0, 0});
+            writeChunk(out, "IHDR", header);
+
+            Bytes data = frame.compressed;
+            data.reset();
+            try (DeflaterOutputStream deflated = new DeflaterOutputStream(data, deflater, 1 << 16)) {
+                row[0] = 1;
+                for (int y = 0; y < height; y++) {
+                    int r0 = 0, g0 = 0, b0 = 0;
+                    int i = 1;
+                    for (int x = 0, k = y * width; x < width; x++, k++) {
+                        int pixel = frame.pixels[k];
+                        int r = (pixel >> 16) & 0xFF;
+                        int g = (pixel >> 8) & 0xFF;
+                        int b = pixel & 0xFF;
+                        row[i++] = (byte) (r - r0);
+                        row[i++] = (byte) (g - g0);
+                        row[i++] = (byte) (b - b0);
+                        r0 = r;
+                        g0 = g;
+                        b0 = b;
+                    }
+                    deflated.write(row);
+                }
+            }
+            writeChunk(out, "IDAT", data);
+            writeChunk(out, "IEND", new Bytes());
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, Bytes data) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data.buffer(), 0, data.size());
+        out.writeInt(data.size());
+        out.write(typeBytes);
+        out.write(data.buffer(), 0, data.size());
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * ByteArrayOutputStream que deixa ler o array interno, para não copiar os dados comprimidos de cada frame.
+     */
+    private static final class Bytes extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    private void writeRaw(Frame frame, File file) throws IOException {
+        if (frame.raw == null) {
+            frame.raw = ByteBuffer.allocate(frame.pixels.length * 4);
+        }
+        frame.raw.clear();
+        frame.raw.asIntBuffer().put(frame.pixels);
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw"); FileChannel channel = out.getChannel()) {
+            channel.truncate(0);
+            while (frame.raw.hasRemaining()) {
+                channel.write(frame.raw);
+            }
+        }
+    }
+}
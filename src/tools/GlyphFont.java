@@ -0,0 +1,104 @@
+package tools;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+import java.util.Arrays;
+
+/**
+ * Texto desenhado a partir de letras já rasterizadas num SpriteAtlas. Cada carácter (ASCII imprimível e as poucas
+ * letras acentuadas das etiquetas) é desenhado uma única vez, com um certo tamanho e a branco, e depois escrever um
+ * texto é só juntar sprites num SpriteBatch. Isto evita o desenho de fontes do Processing, que é caro quando há
+ * muitas etiquetas no ecrã.
+ * Uso: begin(g), text(...) para cada texto e end().
+ */
+public class GlyphFont {
+    private static final String EXTRA_CHARS = "çãéáíóõêÇ";
+
+    private final SpriteBatch batch;
+    private final int[] sprites = new int[256];
+    private final float[] advances = new float[256];
+    private final float ascent;
+
+    /**
+     * @param p objeto PApplet, usado para rasterizar as letras
+     * @param atlas atlas onde as letras são guardadas
+     * @param size tamanho do texto em píxeis
+     */
+    public GlyphFont(PApplet p, SpriteAtlas atlas, float size) {
+        this.batch = new SpriteBatch(atlas);
+
+        PGraphics measure = p.createGraphics(1, 1, PApplet.JAVA2D);
+        measure.beginDraw();
+        measure.textSize(size);
+        ascent = measure.textAscent();
+        int height = (int) Math.ceil(ascent + measure.textDescent());
+        measure.endDraw();
+
+        Arrays.fill(sprites, -1);
+        StringBuilder chars = new StringBuilder(EXTRA_CHARS);
+        for (char c = 32; c < 127; c++) {
+            chars.append(c);
+        }
+        // todas as letras são desenhadas numa só imagem, com um píxel a mais de cada lado por causa do antialiasing,
+        // e depois copiadas uma a uma para o atlas
+        int[] offsets = new int[chars.length() + 1];
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            advances[c] = measure.textWidth(c);
+            offsets[i + 1] = offsets[i] + (int) Math.ceil(advances[c]) + 2;
+        }
+        PGraphics strip = p.createGraphics(offsets[chars.length()], height, PApplet.JAVA2D);
+        strip.beginDraw();
+        strip.clear();
+        strip.textSize(size);
+        strip.fill(255);
+        for (int i = 0; i < chars.length(); i++) {
+            strip.text(chars.charAt(i), offsets[i] + 1, ascent);
+        }
+        strip.endDraw();
+
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c != ' ') {
+                PImage glyph = strip.get(offsets[i], 0, offsets[i + 1] - offsets[i], height);
+                sprites[c] = atlas.addPixels(glyph);
+            }
+        }
+    }
+
+    /**
+     * @param g superfície onde o texto vai ser desenhado
+     */
+    public void begin(PGraphics g) {
+        batch.begin(g);
+    }
+
+    /**
+     * Escreve um texto alinhado à esquerda, com a linha de base em y (como o text do Processing por omissão).
+     * Carácteres que não estão no atlas ficam em branco.
+     * @param text texto a escrever
+     * @param x coordenada x do início do texto em píxeis
+     * @param y coordenada y da linha de base em píxeis
+     */
+    public void text(CharSequence text, float x, float y) {
+        SpriteAtlas atlas = batch.getAtlas();
+        float top = y - ascent;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= sprites.length) {
+                continue;
+            }
+            int sprite = sprites[c];
+            if (sprite >= 0) {
+                batch.add(sprite, x - 1 + atlas.getWidth(sprite) / 2f, top + atlas.getHeight(sprite) / 2f);
+            }
+            x += advances[c];
+        }
+    }
+
+    public void end() {
+        batch.end();
+    }
+}
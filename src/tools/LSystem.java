@@ -1,77 +1,206 @@
 package tools;
 
-import model.entity.plant.LeafTree;
-
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Esta classe que repsenta um LSystem (Sistema de Lindenmayer) é responsável por gerar uma sequência de caracteres
  * com base num conjunto de regras. Este sistema é usado para gerar sequências de caracteres que são usadas para
  * representar estruturas fractais, no nosso caso, as árvores.
+ * Todas as gerações calculadas ficam guardadas, por isso voltar a uma geração já vista não volta a expandir a
+ * sequência. Cada geração é também compilada numa lista de comandos (operação + operando) para quem a desenha, e a
+ * geração seguinte é preparada noutra thread para o frame em que a árvore cresce não ter de esperar pela expansão.
+ * Cada conjunto de regras (espécie de árvore) é um LSystem diferente. Os LSystem são obtidos com intern, que
+ * devolve sempre a mesma instância para o mesmo axioma e regras, por isso todas as árvores da mesma espécie partilham
+ * as gerações já calculadas, seja qual for a idade de cada árvore.
  */
 public class LSystem {
-    private String sequence;
-    private final Rule[] ruleset;
-    private int currentGeneration;
-    private String[] generationHistory;
-    private static final int MAX_GENERATIONS = 3;
+    public static final int OP_DRAW = 0;
+    public static final int OP_MOVE = 1;
+    public static final int OP_TURN = 2;
+    public static final int OP_PUSH = 3;
+    public static final int OP_POP = 4;
+    public static final int OP_LEAF = 5;
 
-    public LSystem(String axiom, Rule[] ruleset) {
-        sequence = axiom;
-        this.ruleset = ruleset;
-        this.currentGeneration = 0;
-        this.generationHistory = new String[MAX_GENERATIONS + 1];
+    // a partir deste tamanho a geração seguinte só é calculada quando é mesmo pedida
+    private static final int MAX_PRECOMPUTED_LENGTH = 1 << 22;
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    private static final Map<String, LSystem> INTERNED = new HashMap<>();
+    private static final Executor EXPANDER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lsystem-expander");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int id = NEXT_ID.getAndIncrement();
+    private final String[] productions = new String[128];
+    private final List<String> generations = new ArrayList<>();
+    private final List<int[]> commands = new ArrayList<>();
+    private CompletableFuture<Generation> pending;
+
+    /**
+     * Geração calculada fora da thread do jogo.
+     */
+    private static final class Generation {
+        final String sequence;
+        final int[] commands;
 
-        Arrays.fill(generationHistory, axiom); // preenche o array com o axiom
+        Generation(String sequence, int[] commands) {
+            this.sequence = sequence;
+            this.commands = commands;
+        }
     }
 
-    public void reset() {
-        currentGeneration = 0;
-        generationHistory = new String[MAX_GENERATIONS + 1];
+    public LSystem(String axiom, Rule[] ruleset) {
+        for (Rule rule : ruleset) {
+            char symbol = rule.getSymbol();
+            if (symbol >= productions.length) {
+                throw new IllegalArgumentException("Unsupported L-system symbol: " + symbol);
+            }
+            productions[symbol] = rule.getString();
+        }
+        generations.add(axiom);
+        commands.add(compile(axiom));
+        prefetch(0);
     }
 
     /**
-     * Faz a próxima geração da sequência de caracteres com base nas regras definidas e guarda a geração atual num
-     * array.
+     * @param axiom sequência inicial
+     * @param ruleset regras da espécie
+     * @return LSystem partilhado para este axioma e regras, criado na primeira vez que é pedido
      */
-    public void nextGeneration() {
-        generationHistory[currentGeneration] = sequence;
-        currentGeneration++;
-
-        String nextGen = "";
-        for(int i=0; i < sequence.length();i++) {
-            char c = sequence.charAt(i);
-
-            String replace = "" + c;
-            for (Rule rule : ruleset) {
-                if (c == rule.getSymbol()) {
-                    replace = rule.getString();
-                    break;
-                }
-            }
-            nextGen += replace;
+    public static LSystem intern(String axiom, Rule[] ruleset) {
+        StringBuilder key = new StringBuilder(axiom);
+        for (Rule rule : ruleset) {
+            key.append('\0').append(rule.getSymbol()).append('=').append(rule.getString());
         }
-        this.sequence = nextGen;
+        return INTERNED.computeIfAbsent(key.toString(), k -> new LSystem(axiom, ruleset));
+    }
+
+    /**
+     * @param generation geração pretendida
+     * @return sequência dessa geração, expandindo as gerações que ainda faltam
+     */
+    public String getSequence(int generation) {
+        while (generations.size() <= generation) {
+            Generation next = pending != null ? pending.join() : expand(generations.get(generations.size() - 1));
+            pending = null;
+            generations.add(next.sequence);
+            commands.add(next.commands);
+        }
+        return generations.get(generation);
+    }
+
+    /**
+     * @param generation geração pretendida
+     * @return comandos compilados dessa geração
+     */
+    public int[] getCommands(int generation) {
+        getSequence(generation);
+        return commands.get(generation);
+    }
+
+    /**
+     * @return número de gerações já calculadas
+     */
+    public int getGenerationCount() {
+        return generations.size();
     }
 
     /**
-     * Faz a geração anterior da sequência de caracteres para simular a morte de uma árvore.
+     * Se a geração a seguir a esta ainda não existe, começa a calculá-la na thread de expansão para estar pronta
+     * quando uma árvore lá chegar.
+     * @param generation geração onde está uma árvore
      */
-    public void previousGeneration(List<LeafTree> leafTrees) {
-        if (currentGeneration <= 0) {
-            leafTrees.clear();
+    public void prefetch(int generation) {
+        int last = generations.size() - 1;
+        if (pending != null || generation + 1 <= last || generations.get(last).length() > MAX_PRECOMPUTED_LENGTH) {
             return;
         }
+        String source = generations.get(last);
+        pending = CompletableFuture.supplyAsync(() -> expand(source), EXPANDER);
+    }
 
-        currentGeneration--;
-        sequence = generationHistory[currentGeneration];
+    /**
+     * @return identificador deste LSystem, distinto para cada conjunto de regras criado
+     */
+    public int getId() {
+        return id;
     }
 
+    public static int op(int command) {
+        return command & 0xFF;
+    }
+
+    public static int operand(int command) {
+        return command >> 8;
+    }
+
+    /**
+     * Aplica as regras a todos os símbolos da sequência. O tamanho do resultado é calculado primeiro para o
+     * StringBuilder nunca ter de crescer, por isso a expansão é linear no tamanho da nova geração.
+     */
+    private Generation expand(String source) {
+        int length = 0;
+        for (int i = 0; i < source.length(); i++) {
+            String replace = production(source.charAt(i));
+            length += replace != null ? replace.length() : 1;
+        }
 
-    public String getSequence() {
-        return sequence;
+        StringBuilder next = new StringBuilder(length);
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            String replace = production(c);
+            if (replace != null) {
+                next.append(replace);
+            } else {
+                next.append(c);
+            }
+        }
+        String result = next.toString();
+        return new Generation(result, compile(result));
     }
 
+    private String production(char c) {
+        return c < productions.length ? productions[c] : null;
+    }
 
-}
\ No newline at end of file
+    /**
+     * Compila a sequência em comandos: a operação fica nos 8 bits mais baixos e o operando nos restantes. Rotações
+     * seguidas são juntas num só comando cujo operando é o número de passos de rotação (positivo para '+').
+     * @param source sequência de caracteres
+     * @return comandos da sequência
+     */
+    private static int[] compile(String source) {
+        int[] out = new int[source.length()];
+        int count = 0;
+        int turn = 0;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '+' || c == '-') {
+                turn += c == '+' ? 1 : -1;
+                continue;
+            }
+            if (turn != 0) {
+                out[count++] = OP_TURN | (turn << 8);
+                turn = 0;
+            }
+            if (c == 'F' || c == 'G') out[count++] = OP_DRAW;
+            else if (c == 'f') out[count++] = OP_MOVE;
+            else if (c == '[') out[count++] = OP_PUSH;
+            else if (c == ']') out[count++] = OP_POP;
+            else if (c == 'L') out[count++] = OP_LEAF;
+        }
+        if (turn != 0) {
+            out[count++] = OP_TURN | (turn << 8);
+        }
+        return Arrays.copyOf(out, count);
+    }
+}
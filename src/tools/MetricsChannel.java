@@ -0,0 +1,137 @@
+package tools;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Canal sem locks entre a simulação (uma única thread que publica) e os gráficos (uma ou mais threads que leem).
+ * Cada amostra é um tick da simulação com um número fixo de valores e fica num ring buffer de tamanho fixo, guardado
+ * em arrays primitivos para que publicar não crie objetos.
+ * Cada leitor tem o seu próprio Cursor e lê ao seu ritmo. Se um leitor se atrasar mais do que a capacidade do buffer,
+ * as amostras mais antigas já foram escritas por cima e o cursor salta para a amostra mais antiga que ainda existe
+ * (as amostras perdidas ficam contadas no cursor). A simulação nunca espera pelos leitores.
+ */
+public class MetricsChannel {
+    private final int values;
+    private final int mask;
+    private final long[] ticks;
+    private final float[] samples;
+    // número de amostras publicadas até agora, é o que torna as amostras visíveis para os leitores
+    private final AtomicLong published = new AtomicLong();
+
+    /**
+     * Posição de um leitor no canal.
+     */
+    public static final class Cursor {
+        private long next;
+        private long lost;
+
+        private Cursor(long next) {
+            this.next = next;
+        }
+
+        /**
+         * @return número de amostras que este leitor perdeu por se ter atrasado
+         */
+        public long getLost() {
+            return lost;
+        }
+    }
+
+    /**
+     * @param values número de valores de cada amostra
+     * @param capacity número de amostras guardadas, arredondado para a potência de 2 seguinte
+     */
+    public MetricsChannel(int values, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.values = values;
+        this.mask = size - 1;
+        this.ticks = new long[size];
+        this.samples = new float[size * values];
+    }
+
+    /**
+     * Publica uma amostra. Só pode ser chamado por uma thread.
+     * @param tick tick da simulação a que a amostra pertence
+     * @param sample valores da amostra, pelo menos getValueCount() posições
+     */
+    public void publish(long tick, float[] sample) {
+        long sequence = published.get();
+        int slot = (int) (sequence & mask);
+        // o lazySet da amostra anterior só impede que as escritas anteriores passem para depois dele; sem esta fence
+        // as escritas seguintes em ticks e samples podiam ficar visíveis antes de published chegar a sequence, e um
+        // leitor que esteja a ler a amostra sequence - capacity() não daria pela reescrita (ver o poll)
+        VarHandle.storeStoreFence();
+        ticks[slot] = tick;
+        System.arraycopy(sample, 0, samples, slot * values, values);
+        // torna a amostra visível: as escritas acima não passam para depois desta
+        published.lazySet(sequence + 1);
+    }
+
+    /**
+     * @return cursor que começa a ler a partir das amostras que ainda vão ser publicadas
+     */
+    public Cursor cursorAtEnd() {
+        return new Cursor(published.get());
+    }
+
+    /**
+     * @return cursor que começa a ler a partir da amostra mais antiga que ainda está no buffer
+     */
+    public Cursor cursorAtStart() {
+        return new Cursor(Math.max(0, published.get() - capacity()));
+    }
+
+    /**
+     * Lê a amostra seguinte de um cursor.
+     * @param cursor cursor do leitor, avança uma amostra se a leitura correr bem
+     * @param out array onde são escritos os valores da amostra
+     * @return tick da amostra lida, ou -1 se não há amostras novas
+     */
+    public long poll(Cursor cursor, float[] out) {
+        while (true) {
+            long available = published.get();
+            if (cursor.next >= available) {
+                return -1;
+            }
+            // a amostra available - capacity() é a que a simulação reescreve a seguir, por isso já não é segura
+            if (available - cursor.next >= capacity()) {
+                skipLost(cursor, available);
+            }
+            int slot = (int) (cursor.next & mask);
+            long tick = ticks[slot];
+            System.arraycopy(samples, slot * values, out, 0, values);
+            // se entretanto a simulação deu a volta ao buffer, esta posição pode ter sido reescrita a meio da leitura.
+            // Do lado do publish, published passa a n + 1 (lazySet) antes de a posição da amostra n + 1 - capacity()
+            // ser reescrita (storeStoreFence), por isso se a leitura apanhou uma escrita da amostra n + 1, o
+            // published lido a seguir é pelo menos n + 1. A acquireFence impede que essa releitura de published passe
+            // para antes da leitura da posição.
+            VarHandle.acquireFence();
+            if (published.get() - cursor.next >= capacity()) {
+                skipLost(cursor, published.get());
+                continue;
+            }
+            cursor.next++;
+            return tick;
+        }
+    }
+
+    public int getValueCount() {
+        return values;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    private void skipLost(Cursor cursor, long available) {
+        // a amostra mais antiga do buffer pode estar a ser reescrita, por isso salta para a seguinte
+        long next = available - capacity() + 1;
+        cursor.lost += next - cursor.next;
+        cursor.next = next;
+    }
+}
@@ -46,6 +46,10 @@ public abstract class Mover {
         return velocity;
     }
 
+    public float getMass() {
+        return mass;
+    }
+
     public void setPosition(PVector mousePosition) {
         position = mousePosition;
     }
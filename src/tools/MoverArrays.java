@@ -0,0 +1,111 @@
+package tools;
+
+import processing.core.PVector;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cópia em arrays de floats (uma por campo) das posições, velocidades, forças e massas de uma lista de Movers, para
+ * que todos possam ser integrados numa só chamada a MoverKernels.integrate. As posições copiadas servem também para
+ * as pesquisas de vizinhos com MoverKernels.hitTest.
+ * O índice de cada Mover nos arrays é o mesmo que na lista. Os arrays só crescem, por isso usar a mesma instância em
+ * todos os frames não cria objetos.
+ * Uso: gather(...), setForce(...) para cada Mover, integrate(...) e scatter(...).
+ */
+public class MoverArrays {
+    private float[] px = new float[0];
+    private float[] py = new float[0];
+    private float[] vx = new float[0];
+    private float[] vy = new float[0];
+    private float[] fx = new float[0];
+    private float[] fy = new float[0];
+    private float[] mass = new float[0];
+    private int count = 0;
+
+    /**
+     * Copia as posições, velocidades e massas dos Movers para os arrays. As forças ficam a zero.
+     * @param movers Movers a copiar
+     */
+    public void gather(List<? extends Mover> movers) {
+        count = movers.size();
+        if (px.length < count) {
+            int capacity = Math.max(16, count * 2);
+            px = new float[capacity];
+            py = new float[capacity];
+            vx = new float[capacity];
+            vy = new float[capacity];
+            fx = new float[capacity];
+            fy = new float[capacity];
+            mass = new float[capacity];
+        }
+        for (int i = 0; i < count; i++) {
+            gather(i, movers.get(i));
+        }
+        Arrays.fill(fx, 0, count, 0);
+        Arrays.fill(fy, 0, count, 0);
+    }
+
+    /**
+     * @param i índice do Mover
+     * @param force força a aplicar ao Mover na próxima integração
+     */
+    public void setForce(int i, PVector force) {
+        fx[i] = force.x;
+        fy[i] = force.y;
+    }
+
+    /**
+     * Integra todos os Movers de uma vez com MoverKernels.integrate. Só os arrays são alterados, os Movers só mudam
+     * em scatter.
+     * @param dt tempo decorrido desde o último frame
+     */
+    public void integrate(float dt) {
+        MoverKernels.integrate(px, py, vx, vy, fx, fy, mass, dt, count);
+    }
+
+    /**
+     * Copia as posições e velocidades integradas de volta para os Movers.
+     * @param movers a mesma lista passada a gather, sem alterações desde então
+     * @param skip Mover que é movido noutro sítio (por exemplo o do jogador) e que fica como está, pode ser null;
+     * a sua entrada nos arrays volta a ter o estado dele, para que as pesquisas seguintes o encontrem onde está
+     */
+    public void scatter(List<? extends Mover> movers, Mover skip) {
+        for (int i = 0; i < count; i++) {
+            Mover mover = movers.get(i);
+            if (mover == skip) {
+                gather(i, mover);
+            } else {
+                mover.getPosition().set(px[i], py[i]);
+                mover.getVelocity().set(vx[i], vy[i]);
+            }
+        }
+    }
+
+    public float[] getXs() {
+        return px;
+    }
+
+    public float[] getYs() {
+        return py;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Volta a copiar o estado de um só Mover, depois de este ter sido alterado fora dos arrays. A força não muda.
+     * @param i índice do Mover, menor que size()
+     * @param mover Mover com esse índice
+     */
+    public void gather(int i, Mover mover) {
+        PVector position = mover.getPosition();
+        PVector velocity = mover.getVelocity();
+        px[i] = position.x;
+        py[i] = position.y;
+        vx[i] = velocity.x;
+        vy[i] = velocity.y;
+        mass[i] = mover.getMass();
+    }
+}
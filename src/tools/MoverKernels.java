@@ -0,0 +1,185 @@
+package tools;
+
+import java.util.Random;
+
+/**
+ * Kernels que trabalham sobre arrays de floats (posições, velocidades e forças guardadas em arrays separados) em vez de
+ * objetos PVector. Existem duas implementações com resultados iguais bit a bit:
+ * a escalar, que corre em qualquer JVM, e a VectorMoverKernels, que usa a Vector API (jdk.incubator.vector) para
+ * tratar FloatVector.SPECIES_PREFERRED elementos de cada vez.
+ * A VectorMoverKernels está numa pasta à parte (vector/), fora das fontes do módulo, para que o jogo compile sem
+ * --add-modules jdk.incubator.vector. Só é carregada quando foi compilada para o classpath e o módulo está presente
+ * (java --add-modules jdk.incubator.vector), e só é usada se, ao ser carregada, der os mesmos resultados que a
+ * escalar num conjunto de dados de teste. Pode ser desligada com -Decosim.simd=false.
+ */
+public final class MoverKernels {
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNELS = "tools.VectorMoverKernels";
+
+    private static final Backend SCALAR = new ScalarBackend();
+    private static final Backend BACKEND = selectBackend();
+
+    /**
+     * Implementação dos kernels. Os dois métodos têm o mesmo contrato que os métodos estáticos de MoverKernels.
+     */
+    interface Backend {
+        void integrate(float[] px, float[] py, float[] vx, float[] vy, float[] fx, float[] fy, float[] mass, float dt,
+                       int count);
+
+        int hitTest(float cx, float cy, float radius, boolean strict, float[] xs, float[] ys, int count, int[] hits);
+    }
+
+    private MoverKernels() {}
+
+    /**
+     * @return true se os kernels estão a usar a Vector API, false se estão a usar a versão escalar
+     */
+    public static boolean isVectorized() {
+        return BACKEND != SCALAR;
+    }
+
+    /**
+     * Integração de Euler igual à de Mover.move(dt, force): a = F / m, v += a * dt, p += v * dt.
+     * @param px posições x
+     * @param py posições y
+     * @param vx velocidades x
+     * @param vy velocidades y
+     * @param fx forças x
+     * @param fy forças y
+     * @param mass massas
+     * @param dt tempo decorrido desde o último frame
+     * @param count número de movers a integrar
+     */
+    public static void integrate(float[] px, float[] py, float[] vx, float[] vy, float[] fx, float[] fy,
+                                 float[] mass, float dt, int count) {
+        BACKEND.integrate(px, py, vx, vy, fx, fy, mass, dt, count);
+    }
+
+    /**
+     * Testa um ponto contra um conjunto de pontos usando distâncias ao quadrado (sem raízes quadradas).
+     * @param cx coordenada x do ponto a testar
+     * @param cy coordenada y do ponto a testar
+     * @param radius distância máxima (exclusiva se strict, inclusiva caso contrário)
+     * @param strict se true um ponto acerta quando d < radius, se false quando d <= radius
+     * @param xs coordenadas x dos pontos
+     * @param ys coordenadas y dos pontos
+     * @param count número de pontos
+     * @param hits array onde são escritos os índices dos pontos que acertaram, por ordem crescente
+     * @return número de acertos escritos em hits
+     */
+    public static int hitTest(float cx, float cy, float radius, boolean strict, float[] xs, float[] ys, int count,
+                              int[] hits) {
+        return BACKEND.hitTest(cx, cy, radius, strict, xs, ys, count, hits);
+    }
+
+    /**
+     * Versão escalar de integrate para os índices entre from (inclusive) e to (exclusive). Também é usada pela
+     * versão vetorial para os elementos que não chegam para encher um vetor.
+     */
+    static void integrateRange(float[] px, float[] py, float[] vx, float[] vy, float[] fx, float[] fy, float[] mass,
+                               float dt, int from, int to) {
+        for (int i = from; i < to; i++) {
+            vx[i] += (fx[i] / mass[i]) * dt;
+            vy[i] += (fy[i] / mass[i]) * dt;
+            px[i] += vx[i] * dt;
+            py[i] += vy[i] * dt;
+        }
+    }
+
+    /**
+     * Versão escalar de hitTest para os índices entre from (inclusive) e to (exclusive). Os acertos são escritos em
+     * hits a partir da posição hitCount.
+     * @return número total de acertos escritos em hits
+     */
+    static int hitTestRange(float cx, float cy, float radiusSq, boolean strict, float[] xs, float[] ys, int from,
+                            int to, int[] hits, int hitCount) {
+        for (int i = from; i < to; i++) {
+            float dx = xs[i] - cx;
+            float dy = ys[i] - cy;
+            float distSq = dx * dx + dy * dy;
+            if (strict ? distSq < radiusSq : distSq <= radiusSq) {
+                hits[hitCount++] = i;
+            }
+        }
+        return hitCount;
+    }
+
+    private static Backend selectBackend() {
+        if (!Boolean.parseBoolean(System.getProperty("ecosim.simd", "true"))
+                || ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return SCALAR;
+        }
+        try {
+            Backend vector = (Backend) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+            return matchesScalar(vector) ? vector : SCALAR;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // a versão vetorial não foi compilada ou não carregou
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Corre os dois kernels de uma implementação e os da versão escalar sobre os mesmos dados e compara os
+     * resultados bit a bit. O número de elementos não é múltiplo do tamanho de nenhum vetor, para testar também o
+     * resto, e há pontos exatamente em cima do raio, para testar a diferença entre strict e não strict.
+     * @param backend implementação a verificar
+     * @return true se os resultados forem iguais aos da versão escalar
+     */
+    static boolean matchesScalar(Backend backend) {
+        final int count = 1021;
+        final float radius = 12.5f;
+        Random random = new Random(31);
+
+        float[][] scalar = new float[7][count];
+        for (float[] values : scalar) {
+            for (int i = 0; i < count; i++) {
+                values[i] = (random.nextFloat() - 0.5f) * 100;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            scalar[6][i] = 0.5f + random.nextFloat() * 4;
+            if (i % 7 == 0) {
+                scalar[0][i] = radius;
+                scalar[1][i] = 0;
+            }
+        }
+        float[][] vector = new float[scalar.length][];
+        for (int k = 0; k < scalar.length; k++) {
+            vector[k] = scalar[k].clone();
+        }
+
+        int[] scalarHits = new int[count];
+        int[] vectorHits = new int[count];
+        for (boolean strict : new boolean[]{true, false}) {
+            int scalarCount = SCALAR.hitTest(0, 0, radius, strict, scalar[0], scalar[1], count, scalarHits);
+            int vectorCount = backend.hitTest(0, 0, radius, strict, vector[0], vector[1], count, vectorHits);
+            if (scalarCount != vectorCount) return false;
+            for (int i = 0; i < scalarCount; i++) {
+                if (scalarHits[i] != vectorHits[i]) return false;
+            }
+        }
+
+        SCALAR.integrate(scalar[0], scalar[1], scalar[2], scalar[3], scalar[4], scalar[5], scalar[6], 0.016f, count);
+        backend.integrate(vector[0], vector[1], vector[2], vector[3], vector[4], vector[5], vector[6], 0.016f, count);
+        for (int k = 0; k < scalar.length; k++) {
+            for (int i = 0; i < count; i++) {
+                if (Float.floatToRawIntBits(scalar[k][i]) != Float.floatToRawIntBits(vector[k][i])) return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class ScalarBackend implements Backend {
+        @Override
+        public void integrate(float[] px, float[] py, float[] vx, float[] vy, float[] fx, float[] fy, float[] mass,
+                              float dt, int count) {
+            integrateRange(px, py, vx, vy, fx, fy, mass, dt, 0, count);
+        }
+
+        @Override
+        public int hitTest(float cx, float cy, float radius, boolean strict, float[] xs, float[] ys, int count,
+                           int[] hits) {
+            return hitTestRange(cx, cy, radius * radius, strict, xs, ys, 0, count, hits, 0);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package tools;
+
+import java.util.function.Supplier;
+
+/**
+ * Pool de objetos com tamanho máximo. Os objetos libertados ficam guardados até serem pedidos outra vez, evitando
+ * criar objetos novos para entidades que nascem e morrem constantemente (blobs, ...).
+ * Se o pool estiver vazio é criado um objeto novo; se estiver cheio os objetos libertados são descartados.
+ * O pool conta os pedidos servidos com objetos reutilizados (hits) e com objetos novos (misses).
+ * Libertar duas vezes o mesmo objeto faria com que dois pedidos seguintes recebessem o mesmo objeto (por exemplo duas
+ * entidades vivas a partilhar um Blob), por isso release recusa objetos que já foram libertados e ainda não voltaram
+ * a ser pedidos.
+ * @param <T> tipo dos objetos do pool
+ */
+public class ObjectPool<T extends Poolable> {
+    private final Supplier<T> factory;
+    private final Object[] free;
+    private int freeCount;
+
+    private long hits;
+    private long misses;
+    private long dropped;
+
+    /**
+     * @param maxSize número máximo de objetos guardados no pool
+     * @param factory cria um objeto novo quando o pool está vazio
+     */
+    public ObjectPool(int maxSize, Supplier<T> factory) {
+        this.factory = factory;
+        this.free = new Object[maxSize];
+    }
+
+    /**
+     * Devolve um objeto do pool já limpo com reset, ou um objeto novo se o pool estiver vazio.
+     * @return objeto pronto a ser inicializado
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if (freeCount == 0) {
+            misses++;
+            return factory.get();
+        }
+        hits++;
+        T object = (T) free[--freeCount];
+        free[freeCount] = null;
+        object.setPooled(false);
+        object.reset();
+        return object;
+    }
+
+    /**
+     * Devolve um objeto ao pool. O objeto não deve voltar a ser usado por quem o libertou. Um objeto descartado por o
+     * pool estar cheio também fica marcado como libertado.
+     * @param object objeto a libertar
+     * @return false se o pool estava cheio e o objeto foi descartado
+     * @throws IllegalStateException se o objeto já tinha sido libertado e não voltou a ser pedido
+     */
+    public boolean release(T object) {
+        if (object.isPooled()) {
+            throw new IllegalStateException("Objeto libertado duas vezes para o ObjectPool: " + object);
+        }
+        object.setPooled(true);
+        if (freeCount == free.length) {
+            dropped++;
+            return false;
+        }
+        free[freeCount++] = object;
+        return true;
+    }
+
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    public int getMaxSize() {
+        return free.length;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return fração dos pedidos que foram servidos com objetos reutilizados, entre 0 e 1
+     */
+    public float getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (float) hits / total;
+    }
+}
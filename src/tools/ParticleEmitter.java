@@ -0,0 +1,87 @@
+package tools;
+
+import java.util.Random;
+
+/**
+ * Emissor contínuo de partículas para um ParticleRing. Em vez de criar um sistema de partículas novo a cada frame, o
+ * emissor lança um número de partículas por segundo enquanto estiver ligado, a partir de um ponto (rasto do jogador)
+ * ou de uma área.
+ */
+public class ParticleEmitter {
+    private final ParticleRing ring;
+    private float rate;
+    private boolean enabled = false;
+    private float accumulator = 0;
+
+    private float x;
+    private float y;
+    private float width = 0;
+    private float height = 0;
+
+    /**
+     * @param ring buffer onde as partículas são lançadas
+     * @param rate número de partículas por segundo
+     */
+    public ParticleEmitter(ParticleRing ring, float rate) {
+        this.ring = ring;
+        this.rate = rate;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setRate(float rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * As partículas nascem à volta deste ponto.
+     */
+    public void setPosition(float x, float y) {
+        this.x = x;
+        this.y = y;
+        this.width = 0;
+        this.height = 0;
+    }
+
+    /**
+     * As partículas nascem numa posição aleatória dentro desta área.
+     */
+    public void setArea(float x, float y, float width, float height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    public ParticleRing getRing() {
+        return ring;
+    }
+
+    /**
+     * Lança as partículas correspondentes ao tempo que passou. A parte fracionária fica guardada para o próximo
+     * frame, por isso o número de partículas por segundo não depende do frame rate.
+     * @param dt tempo decorrido desde o último frame
+     * @param random gerador de números aleatórios
+     */
+    void emit(float dt, Random random) {
+        if (!enabled) {
+            accumulator = 0;
+            return;
+        }
+        accumulator += rate * dt;
+        int count = (int) accumulator;
+        accumulator -= count;
+
+        for (int i = 0; i < count; i++) {
+            float px = width > 0 ? x + random.nextFloat() * width : x;
+            float py = height > 0 ? y + random.nextFloat() * height : y;
+            ParticleEngine.spawnScattered(ring, px, py, random);
+        }
+    }
+}
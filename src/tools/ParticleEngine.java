@@ -0,0 +1,110 @@
+package tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Motor de partículas do jogo. Todas as partículas vivem em ParticleRing de capacidade fixa, criados a partir de um
+ * orçamento global: a soma das capacidades nunca passa do orçamento, por isso a memória usada pelas partículas é
+ * limitada seja qual for o tempo de jogo. Os efeitos contínuos (como o rasto do jogador) são ParticleEmitter e os
+ * efeitos pontuais (sangue) são lançados com burst.
+ */
+public class ParticleEngine {
+    private final int budget;
+    private int reserved = 0;
+    private final List<ParticleRing> rings = new ArrayList<>();
+    private final List<ParticleEmitter> emitters = new ArrayList<>();
+    private final Random random = new Random();
+
+    /**
+     * @param budget número máximo de partículas vivas em todos os buffers
+     */
+    public ParticleEngine(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Cria um buffer de partículas, reservando a sua capacidade no orçamento global.
+     * @param capacity número máximo de partículas vivas neste buffer
+     * @param lifetime tempo de vida das partículas em segundos
+     * @param radius raio das partículas
+     * @param color cor das partículas
+     * @return buffer criado
+     */
+    public ParticleRing createRing(int capacity, float lifetime, float radius, int color) {
+        if (reserved + capacity > budget) {
+            throw new IllegalStateException("Particle budget exceeded: " + (reserved + capacity) + " > " + budget);
+        }
+        reserved += capacity;
+        ParticleRing ring = new ParticleRing(capacity, lifetime, radius, color);
+        rings.add(ring);
+        return ring;
+    }
+
+    /**
+     * @param ring buffer onde o emissor lança as partículas
+     * @param rate número de partículas por segundo
+     * @return emissor criado (desligado)
+     */
+    public ParticleEmitter createEmitter(ParticleRing ring, float rate) {
+        ParticleEmitter emitter = new ParticleEmitter(ring, rate);
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    /**
+     * Lança de uma vez um conjunto de partículas à volta de uma posição.
+     */
+    public void burst(ParticleRing ring, float x, float y, int count) {
+        for (int i = 0; i < count; i++) {
+            spawnScattered(ring, x, y, random);
+        }
+    }
+
+    /**
+     * Lança os emissores ligados e atualiza todos os buffers.
+     * @param dt tempo decorrido desde o último frame
+     */
+    public void update(float dt) {
+        for (ParticleEmitter emitter : emitters) {
+            emitter.emit(dt, random);
+        }
+        for (ParticleRing ring : rings) {
+            ring.update(dt);
+        }
+    }
+
+    /**
+     * Acrescenta todas as partículas vivas ao renderer de partículas.
+     */
+    public void render(ParticleRenderer renderer) {
+        for (ParticleRing ring : rings) {
+            renderer.add(ring);
+        }
+    }
+
+    public int getLiveCount() {
+        int live = 0;
+        for (ParticleRing ring : rings) {
+            live += ring.size();
+        }
+        return live;
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    /**
+     * Para garantir uma maior aleatoriedade, a velocidade é calculada com base num ângulo aleatório e a posição com
+     * base numa posição aleatória dentro de um raio de 0.1f.
+     */
+    static void spawnScattered(ParticleRing ring, float x, float y, Random random) {
+        float angle = random.nextFloat() * (float) (Math.PI * 2);
+        float velocity = random.nextFloat() * 2 + 1;
+        float offsetX = (random.nextFloat() - 0.5f) * 0.1f;
+        float offsetY = (random.nextFloat() - 0.5f) * 0.1f;
+        ring.spawn(x + offsetX, y + offsetY, (float) Math.cos(angle) * velocity, (float) Math.sin(angle) * velocity);
+    }
+}
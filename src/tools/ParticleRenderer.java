@@ -0,0 +1,163 @@
+package tools;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Desenha as partículas de vários buffers numa só passagem. As partículas são agrupadas pelo seu estilo (cor e
+ * tamanho) e pela fase da vida em que estão. A cor desvanecida de cada fase é calculada uma única vez por cor (rampa
+ * de cores), por isso desenhar uma partícula é só acrescentar um ponto ao grupo certo. No renderer OpenGL todos os
+ * pontos vão num único shape; no Java2D cada grupo é um shape com o estilo definido uma só vez.
+ * Uso: begin(plt), add(...) para cada buffer e end(g).
+ */
+public class ParticleRenderer {
+    public static final int BUCKETS = 16;
+
+    private final Map<Integer, int[]> ramps = new HashMap<>();
+    private SubPlot plt;
+
+    private int count = 0;
+    private float[] xs = new float[1024];
+    private float[] ys = new float[1024];
+    private int[] keys = new int[1024];
+    private int[] order = new int[1024];
+
+    private int styleCount = 0;
+    private int[] styleColors = new int[8];
+    private float[] styleRadii = new float[8];
+    private int[][] styleRamps = new int[8][];
+    private int[] groupStarts = new int[8 * BUCKETS + 1];
+
+    /**
+     * Começa um novo frame, esquecendo as partículas acrescentadas antes.
+     * @param plt subplot usado para converter as posições para píxeis
+     */
+    public void begin(SubPlot plt) {
+        this.plt = plt;
+        count = 0;
+        styleCount = 0;
+    }
+
+    /**
+     * Acrescenta as partículas vivas de um buffer de partículas.
+     * @param ring buffer de partículas
+     */
+    public void add(ParticleRing ring) {
+        if (plt == null || ring.size() == 0) {
+            return;
+        }
+        int style = styleIndex(ring.getColor(), ring.getRadius());
+        int needed = count + ring.size();
+        if (needed > xs.length) {
+            int capacity = Math.max(needed, xs.length * 2);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            order = new int[capacity];
+        }
+        for (int i = 0; i < ring.size(); i++) {
+            int index = ring.slot(i);
+            int bucket = Math.min(BUCKETS - 1, (int) (ring.getLifeFraction(index) * BUCKETS));
+            xs[count] = plt.getPixelX(ring.getX(index));
+            ys[count] = plt.getPixelY(ring.getY(index));
+            keys[count] = style * BUCKETS + bucket;
+            count++;
+        }
+    }
+
+    /**
+     * Desenha todas as partículas acrescentadas desde o begin.
+     * @param g superfície onde as partículas são desenhadas
+     */
+    public void end(PGraphics g) {
+        if (count == 0) {
+            plt = null;
+            return;
+        }
+
+        // ordenação por contagem: as partículas do mesmo grupo ficam seguidas
+        int groups = styleCount * BUCKETS;
+        if (groupStarts.length < groups + 1) {
+            groupStarts = new int[groups + 1];
+        }
+        Arrays.fill(groupStarts, 0, groups + 1, 0);
+        for (int i = 0; i < count; i++) {
+            groupStarts[keys[i] + 1]++;
+        }
+        for (int k = 0; k < groups; k++) {
+            groupStarts[k + 1] += groupStarts[k];
+        }
+        for (int i = 0; i < count; i++) {
+            order[groupStarts[keys[i]]++] = i;
+        }
+
+        boolean gl = g.isGL();
+        g.pushStyle();
+        g.strokeCap(PApplet.ROUND);
+        if (gl) {
+            g.beginShape(PApplet.POINTS);
+        }
+        int start = 0;
+        for (int k = 0; k < groups; k++) {
+            int end = groupStarts[k];
+            if (end == start) {
+                continue;
+            }
+            int style = k / BUCKETS;
+            g.stroke(styleRamps[style][k % BUCKETS]);
+            g.strokeWeight(plt.getPixelX(styleRadii[style]) * 2);
+            if (!gl) {
+                g.beginShape(PApplet.POINTS);
+            }
+            for (int j = start; j < end; j++) {
+                int i = order[j];
+                g.vertex(xs[i], ys[i]);
+            }
+            if (!gl) {
+                g.endShape();
+            }
+            start = end;
+        }
+        if (gl) {
+            g.endShape();
+        }
+        g.popStyle();
+
+        count = 0;
+        plt = null;
+    }
+
+    private int styleIndex(int color, float radius) {
+        for (int s = 0; s < styleCount; s++) {
+            if (styleColors[s] == color && styleRadii[s] == radius) {
+                return s;
+            }
+        }
+        if (styleCount == styleColors.length) {
+            styleColors = Arrays.copyOf(styleColors, styleCount * 2);
+            styleRadii = Arrays.copyOf(styleRadii, styleCount * 2);
+            styleRamps = Arrays.copyOf(styleRamps, styleCount * 2);
+        }
+        styleColors[styleCount] = color;
+        styleRadii[styleCount] = radius;
+        styleRamps[styleCount] = ramps.computeIfAbsent(color, ParticleRenderer::ramp);
+        return styleCount++;
+    }
+
+    /**
+     * Rampa de cores de uma cor: a mesma cor com a transparência a descer de 255 (início da vida) até perto de 0.
+     */
+    private static int[] ramp(int color) {
+        int[] ramp = new int[BUCKETS];
+        int rgb = color & 0xFFFFFF;
+        for (int b = 0; b < BUCKETS; b++) {
+            int alpha = Math.round(255f * (BUCKETS - b) / BUCKETS);
+            ramp[b] = (alpha << 24) | rgb;
+        }
+        return ramp;
+    }
+}
@@ -0,0 +1,145 @@
+package tools;
+
+/**
+ * Buffer circular de partículas com capacidade fixa. As partículas são guardadas em arrays de tipos primitivos (uma
+ * posição de cada array por partícula) em vez de objetos, e todas as partículas do mesmo buffer partilham a cor, o
+ * raio e o tempo de vida. Como as partículas são acrescentadas por ordem de nascimento e vivem todas o mesmo tempo,
+ * morrem também por essa ordem: as que expiram estão sempre no início do buffer e removê-las é O(1) cada.
+ * Quando o buffer está cheio, uma partícula nova substitui a mais antiga, por isso a memória nunca cresce.
+ */
+public class ParticleRing {
+    private final int capacity;
+    private final float[] xs;
+    private final float[] ys;
+    private final float[] vxs;
+    private final float[] vys;
+    private final float[] births;
+
+    private final float radius;
+    private final int color;
+    private float lifetime;
+
+    private int head = 0;
+    private int count = 0;
+    private float time = 0;
+    private long overwritten = 0;
+
+    /**
+     * @param capacity número máximo de partículas vivas
+     * @param lifetime tempo de vida das partículas em segundos
+     * @param radius raio das partículas
+     * @param color cor das partículas
+     */
+    public ParticleRing(int capacity, float lifetime, float radius, int color) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.xs = new float[capacity];
+        this.ys = new float[capacity];
+        this.vxs = new float[capacity];
+        this.vys = new float[capacity];
+        this.births = new float[capacity];
+        this.lifetime = lifetime;
+        this.radius = radius;
+        this.color = color;
+    }
+
+    /**
+     * Acrescenta uma partícula. Se o buffer estiver cheio, a partícula mais antiga é substituída.
+     */
+    public void spawn(float x, float y, float velX, float velY) {
+        int index;
+        if (count == capacity) {
+            index = head;
+            head = next(head);
+            overwritten++;
+        } else {
+            index = slot(count);
+            count++;
+        }
+        xs[index] = x;
+        ys[index] = y;
+        vxs[index] = velX;
+        vys[index] = velY;
+        births[index] = time;
+    }
+
+    /**
+     * Remove as partículas que expiraram (do início do buffer) e move as restantes.
+     * @param dt tempo decorrido desde o último frame
+     */
+    public void update(float dt) {
+        time += dt;
+        while (count > 0 && time - births[head] >= lifetime) {
+            head = next(head);
+            count--;
+        }
+        for (int i = 0; i < count; i++) {
+            int index = slot(i);
+            xs[index] += vxs[index] * dt;
+            ys[index] += vys[index] * dt;
+        }
+    }
+
+    public void clear() {
+        head = 0;
+        count = 0;
+    }
+
+    /**
+     * @param i posição da partícula entre as vivas (0 é a mais antiga)
+     * @return índice da partícula nos arrays do buffer
+     */
+    public int slot(int i) {
+        int index = head + i;
+        return index >= capacity ? index - capacity : index;
+    }
+
+    public float getX(int index) {
+        return xs[index];
+    }
+
+    public float getY(int index) {
+        return ys[index];
+    }
+
+    /**
+     * @param index índice da partícula nos arrays do buffer
+     * @return fração da vida já passada, de 0 (acabou de nascer) a 1 (morta)
+     */
+    public float getLifeFraction(int index) {
+        return lifetime > 0 ? Math.min(1, (time - births[index]) / lifetime) : 1;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    public float getLifetime() {
+        return lifetime;
+    }
+
+    /**
+     * @return número de partículas que foram substituídas antes de morrerem por o buffer estar cheio
+     */
+    public long getOverwritten() {
+        return overwritten;
+    }
+
+    private int next(int index) {
+        return index + 1 == capacity ? 0 : index + 1;
+    }
+}
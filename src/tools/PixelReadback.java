@@ -0,0 +1,195 @@
+package tools;
+
+import processing.core.PGraphics;
+import processing.opengl.PGL;
+import processing.opengl.PGraphicsOpenGL;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Leitura assíncrona dos píxeis de um frame nos renderers OpenGL (P2D/P3D). O loadPixels do OpenGL obriga a thread
+ * de desenho a esperar que a placa gráfica acabe o frame e copie os píxeis; aqui a cópia é pedida para um pixel
+ * buffer object (PBO) de um pequeno anel e a thread de desenho continua. Uma fence marca o fim da cópia e, num dos
+ * frames seguintes, o PBO já preenchido é mapeado em memória e entregue a quem o pediu.
+ * Os píxeis chegam como bytes RGBA, com as linhas de baixo para cima, tal como o OpenGL os devolve.
+ * Só pode ser usado na thread de desenho, com o contexto OpenGL ativo.
+ */
+final class PixelReadback {
+    private static final int SYNC_FLUSH_COMMANDS_BIT = 0x00000001;
+    private static final long WAIT_TIMEOUT_NANOS = 1_000_000_000L;
+
+    /**
+     * Recebe os píxeis de um frame lido. O buffer só é válido durante a chamada.
+     */
+    interface Sink {
+        void accept(ByteBuffer rgba, long tick);
+    }
+
+    private final PGraphicsOpenGL pg;
+    private final int width;
+    private final int height;
+    private final int[] pbos;
+    private final long[] fences;
+    private final long[] ticks;
+    private int head;
+    private int pending;
+
+    private PixelReadback(PGraphicsOpenGL pg, int width, int height, int slots) {
+        this.pg = pg;
+        this.width = width;
+        this.height = height;
+        pbos = new int[slots];
+        fences = new long[slots];
+        ticks = new long[slots];
+
+        IntBuffer names = ByteBuffer.allocateDirect(slots * Integer.BYTES).order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+        PGL pgl = pg.beginPGL();
+        try {
+            pgl.genBuffers(slots, names);
+            for (int i = 0; i < slots; i++) {
+                pbos[i] = names.get(i);
+                pgl.bindBuffer(PGL.PIXEL_PACK_BUFFER, pbos[i]);
+                pgl.bufferData(PGL.PIXEL_PACK_BUFFER, width * height * 4, null, PGL.STREAM_READ);
+            }
+            pgl.bindBuffer(PGL.PIXEL_PACK_BUFFER, 0);
+        } finally {
+            pg.endPGL();
+        }
+    }
+
+    /**
+     * Cria a leitura assíncrona se g for uma superfície OpenGL que a suporte (OpenGL 3.2 ou mais recente, que tem
+     * PBOs e fences). Tem de ser chamado na thread de desenho.
+     * @param g superfície com os frames
+     * @param width largura dos frames em píxeis
+     * @param height altura dos frames em píxeis
+     * @param slots número de leituras que podem estar em curso ao mesmo tempo
+     * @return a leitura assíncrona, ou null se o renderer não for OpenGL ou não a suportar
+     */
+    static PixelReadback create(PGraphics g, int width, int height, int slots) {
+        if (!(g instanceof PGraphicsOpenGL)) {
+            return null;
+        }
+        PGraphicsOpenGL pg = (PGraphicsOpenGL) g;
+        try {
+            if (!supportsSync(pg.pgl.getString(PGL.VERSION))) {
+                return null;
+            }
+            return new PixelReadback(pg, width, height, slots);
+        } catch (RuntimeException e) {
+            // o driver não aceitou os PBOs: a captura volta a usar o loadPixels
+            return null;
+        }
+    }
+
+    /**
+     * O OpenGL ES não tem glMapBuffer e as fences só existem a partir do OpenGL 3.2.
+     */
+    private static boolean supportsSync(String version) {
+        if (version == null || version.startsWith("OpenGL ES")) {
+            return false;
+        }
+        int dot = version.indexOf('.');
+        if (dot <= 0 || dot + 1 >= version.length()) {
+            return false;
+        }
+        try {
+            int major = Integer.parseInt(version.substring(0, dot).trim());
+            int minor = Character.digit(version.charAt(dot + 1), 10);
+            return major > 3 || (major == 3 && minor >= 2);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Pede a cópia do frame atual para o próximo PBO livre. Se estiverem todos ocupados, espera pela leitura mais
+     * antiga e entrega-a primeiro.
+     * @param tick tick do frame, entregue junto com os píxeis
+     * @param sink recebe as leituras que terminarem durante a chamada
+     */
+    void start(long tick, Sink sink) {
+        if (pending == pbos.length) {
+            completeOldest(true, sink);
+        }
+        int slot = (head + pending) % pbos.length;
+
+        PGL pgl = pg.beginPGL();
+        try {
+            pgl.bindBuffer(PGL.PIXEL_PACK_BUFFER, pbos[slot]);
+            // com um PBO ligado o último argumento é o deslocamento dentro do PBO e a chamada não espera pela cópia
+            pgl.readPixels(0, 0, width, height, PGL.RGBA, PGL.UNSIGNED_BYTE, 0L);
+            pgl.bindBuffer(PGL.PIXEL_PACK_BUFFER, 0);
+            fences[slot] = pgl.fenceSync(PGL.SYNC_GPU_COMMANDS_COMPLETE, 0);
+        } finally {
+            pg.endPGL();
+        }
+        ticks[slot] = tick;
+        pending++;
+    }
+
+    /**
+     * Entrega, por ordem, as leituras que já terminaram, sem esperar pelas outras.
+     * @param sink recebe as leituras terminadas
+     */
+    void completeFinished(Sink sink) {
+        while (pending > 0 && completeOldest(false, sink)) {
+            // continua enquanto a leitura mais antiga já estiver pronta
+        }
+    }
+
+    /**
+     * Espera por todas as leituras em curso, entrega-as e liberta os PBOs.
+     * @param sink recebe as leituras
+     */
+    void close(Sink sink) {
+        while (pending > 0) {
+            completeOldest(true, sink);
+        }
+        IntBuffer names = ByteBuffer.allocateDirect(pbos.length * Integer.BYTES).order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+        names.put(pbos).rewind();
+        PGL pgl = pg.beginPGL();
+        try {
+            pgl.deleteBuffers(pbos.length, names);
+        } finally {
+            pg.endPGL();
+        }
+    }
+
+    /**
+     * @return número de leituras pedidas que ainda não foram entregues
+     */
+    int getPending() {
+        return pending;
+    }
+
+    private boolean completeOldest(boolean wait, Sink sink) {
+        int slot = head;
+        PGL pgl = pg.beginPGL();
+        try {
+            int status = pgl.clientWaitSync(fences[slot], wait ? SYNC_FLUSH_COMMANDS_BIT : 0,
+                    wait ? WAIT_TIMEOUT_NANOS : 0);
+            if (status != PGL.ALREADY_SIGNALED && status != PGL.CONDITION_SATISFIED && !wait) {
+                return false;
+            }
+            pgl.deleteSync(fences[slot]);
+
+            pgl.bindBuffer(PGL.PIXEL_PACK_BUFFER, pbos[slot]);
+            ByteBuffer rgba = pgl.mapBuffer(PGL.PIXEL_PACK_BUFFER, PGL.READ_ONLY);
+            if (rgba != null) {
+                sink.accept(rgba, ticks[slot]);
+            }
+            pgl.unmapBuffer(PGL.PIXEL_PACK_BUFFER);
+            pgl.bindBuffer(PGL.PIXEL_PACK_BUFFER, 0);
+        } finally {
+            pg.endPGL();
+        }
+        head = (head + 1) % pbos.length;
+        pending--;
+        return true;
+    }
+}
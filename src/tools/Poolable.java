@@ -0,0 +1,18 @@
+package tools;
+
+/**
+ * Objetos que podem ser reutilizados através de um ObjectPool. O método reset é chamado sempre que o objeto sai do
+ * pool e deve limpar todo o estado que ficou da utilização anterior.
+ * O ObjectPool marca cada objeto como estando ou não no pool (setPooled), o que lhe permite recusar um objeto que
+ * seja libertado duas vezes; as implementações só têm de guardar a marca.
+ */
+public interface Poolable {
+    void reset();
+
+    /**
+     * @return true se o objeto foi libertado para um ObjectPool e ainda não voltou a ser pedido
+     */
+    boolean isPooled();
+
+    void setPooled(boolean pooled);
+}
@@ -0,0 +1,136 @@
+package tools;
+
+import java.util.Arrays;
+
+/**
+ * Índice espacial com uma grelha uniforme de células quadradas. Os pontos são numerados pela ordem em que são
+ * acrescentados e, em build, ordenados por célula com um counting sort, por isso refazer a grelha em cada frame é
+ * O(n) e não cria objetos. Uma pesquisa por retângulo só visita as células que o intersetam.
+ * Uso: clear(), add(...) para cada ponto, build() e depois query(...) ou getCellCount(...).
+ */
+public class SpatialGrid {
+    private final float minX;
+    private final float minY;
+    private final float cellSize;
+    private final int columns;
+    private final int rows;
+
+    private final int[] cellStart;
+    private int[] cells = new int[256];
+    private int[] items = new int[256];
+    private float[] xs = new float[256];
+    private float[] ys = new float[256];
+    private int count = 0;
+
+    /**
+     * @param minX menor coordenada x da área coberta
+     * @param minY menor coordenada y da área coberta
+     * @param width largura da área coberta
+     * @param height altura da área coberta
+     * @param cellSize lado de cada célula
+     */
+    public SpatialGrid(float minX, float minY, float width, float height, float cellSize) {
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.cellStart = new int[columns * rows + 1];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Acrescenta um ponto. Pontos fora da área ficam na célula da borda mais próxima.
+     * @return índice do ponto, usado nas pesquisas
+     */
+    public int add(float x, float y) {
+        if (count == xs.length) {
+            xs = Arrays.copyOf(xs, count * 2);
+            ys = Arrays.copyOf(ys, count * 2);
+            cells = Arrays.copyOf(cells, count * 2);
+            items = Arrays.copyOf(items, count * 2);
+        }
+        xs[count] = x;
+        ys[count] = y;
+        cells[count] = column(x) + row(y) * columns;
+        return count++;
+    }
+
+    /**
+     * Ordena os pontos por célula. Tem de ser chamado depois de acrescentar os pontos e antes das pesquisas.
+     */
+    public void build() {
+        Arrays.fill(cellStart, 0);
+        for (int i = 0; i < count; i++) {
+            cellStart[cells[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        // cellStart[c] serve de cursor enquanto se preenche e volta ao início da célula no fim
+        for (int i = 0; i < count; i++) {
+            items[cellStart[cells[i]]++] = i;
+        }
+        for (int c = columns * rows; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    /**
+     * Procura os pontos dentro de um retângulo.
+     * @param out array onde são escritos os índices dos pontos encontrados, tem de ter espaço para todos os pontos
+     * @return número de pontos encontrados
+     */
+    public int query(float left, float top, float right, float bottom, int[] out) {
+        int c0 = column(left);
+        int c1 = column(right);
+        int r0 = row(top);
+        int r1 = row(bottom);
+        int found = 0;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = c + r * columns;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = items[k];
+                    if (xs[i] >= left && xs[i] <= right && ys[i] >= top && ys[i] <= bottom) {
+                        out[found++] = i;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    public int getCellCount(int column, int row) {
+        int cell = column + row * columns;
+        return cellStart[cell + 1] - cellStart[cell];
+    }
+
+    public int column(float x) {
+        return Math.max(0, Math.min(columns - 1, (int) ((x - minX) / cellSize)));
+    }
+
+    public int row(float y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellSize)));
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    public float getMinX() {
+        return minX;
+    }
+
+    public float getMinY() {
+        return minY;
+    }
+
+    public int size() {
+        return count;
+    }
+}
@@ -0,0 +1,168 @@
+package tools;
+
+import processing.core.PApplet;
+import processing.core.PImage;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Junta todas as imagens dos sprites (blobs, frutas, casas) numa única imagem (atlas). Cada sprite é guardado já
+ * redimensionado para o tamanho em píxeis que tem no ecrã com a escala do SubPlot, e também já espelhado, para que
+ * desenhar um sprite seja só copiar uma zona do atlas sem escalar nem rodar a matriz.
+ * Os sprites são identificados por um inteiro: o id devolvido por getSprite é a versão normal e o id seguinte
+ * (flipped) é a versão espelhada na horizontal.
+ */
+public class SpriteAtlas {
+    private static final int PADDING = 1;
+    private static final int INITIAL_SIZE = 512;
+
+    private final PApplet p;
+    private final SubPlot plt;
+    private final Map<PImage, int[]> spritesBySource = new IdentityHashMap<>();
+
+    private PImage atlas;
+    private int shelfX = 0;
+    private int shelfY = 0;
+    private int shelfHeight = 0;
+
+    private int count = 0;
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int[] widths = new int[16];
+    private int[] heights = new int[16];
+
+    public SpriteAtlas(PApplet p, SubPlot plt) {
+        this.p = p;
+        this.plt = plt;
+        this.atlas = p.createImage(INITIAL_SIZE, INITIAL_SIZE, PApplet.ARGB);
+        atlas.loadPixels();
+    }
+
+    /**
+     * Devolve o sprite de uma imagem com um certo tamanho no mundo, acrescentando-o ao atlas na primeira vez.
+     * @param source imagem original
+     * @param worldWidth largura do sprite no mundo
+     * @param worldHeight altura do sprite no mundo
+     * @return id da versão normal do sprite (a versão espelhada é flipped(id))
+     */
+    public int getSprite(PImage source, float worldWidth, float worldHeight) {
+        int width = Math.max(1, Math.round(Math.abs(plt.getVectorX(worldWidth))));
+        int height = Math.max(1, Math.round(Math.abs(plt.getVectorY(worldHeight))));
+
+        int[] known = spritesBySource.get(source);
+        if (known != null) {
+            for (int sprite : known) {
+                if (widths[sprite] == width && heights[sprite] == height) {
+                    return sprite;
+                }
+            }
+        }
+
+        PImage scaled = source.copy();
+        scaled.resize(width, height);
+        scaled.loadPixels();
+        int sprite = pack(scaled, false);
+        pack(scaled, true);
+        atlas.updatePixels();
+
+        int[] sprites = known == null ? new int[1] : Arrays.copyOf(known, known.length + 1);
+        sprites[sprites.length - 1] = sprite;
+        spritesBySource.put(source, sprites);
+        return sprite;
+    }
+
+    /**
+     * Acrescenta ao atlas uma imagem que já tem o tamanho final em píxeis, sem versão espelhada (usado pelas letras
+     * da GlyphFont).
+     * @param image imagem a copiar para o atlas
+     * @return id do sprite
+     */
+    public int addPixels(PImage image) {
+        image.loadPixels();
+        int sprite = pack(image, false);
+        atlas.updatePixels();
+        return sprite;
+    }
+
+    public static int flipped(int sprite) {
+        return sprite + 1;
+    }
+
+    public PImage getImage() {
+        return atlas;
+    }
+
+    public int getX(int sprite) {
+        return xs[sprite];
+    }
+
+    public int getY(int sprite) {
+        return ys[sprite];
+    }
+
+    public int getWidth(int sprite) {
+        return widths[sprite];
+    }
+
+    public int getHeight(int sprite) {
+        return heights[sprite];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Copia a imagem para o atlas, numa prateleira (linha) com espaço livre. Se o atlas ficar sem espaço, duplica de
+     * tamanho mantendo as posições dos sprites que já lá estavam.
+     */
+    private int pack(PImage image, boolean flip) {
+        if (shelfX + image.width + PADDING > atlas.width) {
+            shelfX = 0;
+            shelfY += shelfHeight;
+            shelfHeight = 0;
+        }
+        while (image.width + PADDING > atlas.width || shelfY + image.height + PADDING > atlas.height) {
+            grow();
+        }
+
+        int x = shelfX;
+        int y = shelfY;
+        for (int row = 0; row < image.height; row++) {
+            int from = row * image.width;
+            int to = (y + row) * atlas.width + x;
+            if (flip) {
+                for (int column = 0; column < image.width; column++) {
+                    atlas.pixels[to + column] = image.pixels[from + image.width - 1 - column];
+                }
+            } else {
+                System.arraycopy(image.pixels, from, atlas.pixels, to, image.width);
+            }
+        }
+        shelfX += image.width + PADDING;
+        shelfHeight = Math.max(shelfHeight, image.height + PADDING);
+
+        if (count == xs.length) {
+            xs = Arrays.copyOf(xs, count * 2);
+            ys = Arrays.copyOf(ys, count * 2);
+            widths = Arrays.copyOf(widths, count * 2);
+            heights = Arrays.copyOf(heights, count * 2);
+        }
+        xs[count] = x;
+        ys[count] = y;
+        widths[count] = image.width;
+        heights[count] = image.height;
+        return count++;
+    }
+
+    private void grow() {
+        PImage bigger = p.createImage(atlas.width * 2, atlas.height * 2, PApplet.ARGB);
+        bigger.loadPixels();
+        for (int row = 0; row < atlas.height; row++) {
+            System.arraycopy(atlas.pixels, row * atlas.width, bigger.pixels, row * bigger.width, atlas.width);
+        }
+        atlas = bigger;
+    }
+}
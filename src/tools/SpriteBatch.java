@@ -0,0 +1,204 @@
+package tools;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.core.PImage;
+import processing.core.PMatrix2D;
+
+import java.util.Arrays;
+
+/**
+ * Desenha vários sprites do mesmo SpriteAtlas de uma vez. Os sprites são guardados em add e só são desenhados em
+ * end, pela ordem em que foram acrescentados.
+ * No renderer OpenGL os sprites são juntos num único shape de quads com a textura do atlas, ou seja, uma só chamada
+ * de desenho para todos. No renderer Java2D os sprites são copiados do atlas diretamente para os pixels da
+ * superfície, com um só loadPixels/updatePixels para todos; a matriz de transformação (a câmara) só pode ter escala
+ * e translação e o tamanho é ajustado à escala escolhendo o píxel do atlas mais próximo. Com poucos sprites, ou com
+ * uma matriz com rotação, ler e escrever os pixels da superfície custa mais do que desenhar cada sprite com image,
+ * e é isso que é feito.
+ * Uso: begin(g), add(...) para cada sprite e end().
+ */
+public class SpriteBatch {
+    // a partir de quantos sprites a cópia para os pixels compensa no Java2D, com a matriz sem escala e com escala.
+    // Ler e escrever os pixels de uma janela de 1000x800 custa cerca de 1 ms, desenhar um sprite com image cerca de
+    // 2.5 us sem escala e 20 us com escala, e copiá-lo para os pixels cerca de 1 us
+    private static final int BLIT_MIN_SPRITES = 512;
+    private static final int BLIT_MIN_SCALED_SPRITES = 48;
+
+    private final SpriteAtlas atlas;
+    private final PMatrix2D matrix = new PMatrix2D();
+    private PGraphics g;
+    private boolean gl;
+
+    private float[] lefts = new float[256];
+    private float[] tops = new float[256];
+    private int[] sprites = new int[256];
+    private int count = 0;
+
+    public SpriteBatch(SpriteAtlas atlas) {
+        this.atlas = atlas;
+    }
+
+    public SpriteAtlas getAtlas() {
+        return atlas;
+    }
+
+    /**
+     * @param g superfície onde os sprites vão ser desenhados
+     */
+    public void begin(PGraphics g) {
+        this.g = g;
+        this.gl = g.isGL();
+        count = 0;
+    }
+
+    /**
+     * Acrescenta um sprite centrado numa posição em píxeis.
+     * @param sprite id do sprite no atlas
+     * @param centerX coordenada x do centro em píxeis
+     * @param centerY coordenada y do centro em píxeis
+     */
+    public void add(int sprite, float centerX, float centerY) {
+        float left = centerX - atlas.getWidth(sprite) / 2f;
+        float top = centerY - atlas.getHeight(sprite) / 2f;
+        if (count == sprites.length) {
+            lefts = Arrays.copyOf(lefts, count * 2);
+            tops = Arrays.copyOf(tops, count * 2);
+            sprites = Arrays.copyOf(sprites, count * 2);
+        }
+        lefts[count] = left;
+        tops[count] = top;
+        sprites[count] = sprite;
+        count++;
+    }
+
+    /**
+     * Desenha os sprites que ficaram guardados.
+     */
+    public void end() {
+        if (count > 0) {
+            if (gl) {
+                drawQuads();
+            } else if (!blit()) {
+                drawImages();
+            }
+        }
+        count = 0;
+        g = null;
+    }
+
+    private void drawQuads() {
+        PImage image = atlas.getImage();
+        g.pushStyle();
+        g.noStroke();
+        g.noTint();
+        g.textureMode(PApplet.IMAGE);
+        g.beginShape(PApplet.QUADS);
+        g.texture(image);
+        for (int i = 0; i < count; i++) {
+            int sprite = sprites[i];
+            float u = atlas.getX(sprite);
+            float v = atlas.getY(sprite);
+            float w = atlas.getWidth(sprite);
+            float h = atlas.getHeight(sprite);
+            float x = lefts[i];
+            float y = tops[i];
+            g.vertex(x, y, u, v);
+            g.vertex(x + w, y, u + w, v);
+            g.vertex(x + w, y + h, u + w, v + h);
+            g.vertex(x, y + h, u, v + h);
+        }
+        g.endShape();
+        g.popStyle();
+    }
+
+    private void drawImages() {
+        PImage image = atlas.getImage();
+        for (int i = 0; i < count; i++) {
+            int sprite = sprites[i];
+            int u = atlas.getX(sprite);
+            int v = atlas.getY(sprite);
+            int w = atlas.getWidth(sprite);
+            int h = atlas.getHeight(sprite);
+            g.image(image, lefts[i], tops[i], w, h, u, v, u + w, v + h);
+        }
+    }
+
+    /**
+     * Copia os sprites do atlas para os pixels da superfície (renderer Java2D). Cada sprite é misturado por cima do
+     * que já lá está com o seu alfa; os píxeis totalmente opacos ou transparentes não precisam de ser misturados.
+     * @return false se a cópia não compensa ou a matriz tem rotação, e nesse caso nada foi desenhado
+     */
+    private boolean blit() {
+        g.getMatrix(matrix);
+        if (matrix.m01 != 0 || matrix.m10 != 0 || matrix.m00 <= 0 || matrix.m11 <= 0) {
+            return false;
+        }
+        boolean scaled = matrix.m00 != 1 || matrix.m11 != 1;
+        if (count < (scaled ? BLIT_MIN_SCALED_SPRITES : BLIT_MIN_SPRITES)) {
+            return false;
+        }
+
+        // a matriz está em coordenadas do sketch, os pixels podem ter mais densidade
+        float density = g.pixelDensity;
+        float scaleX = matrix.m00 * density;
+        float scaleY = matrix.m11 * density;
+        float offsetX = matrix.m02 * density;
+        float offsetY = matrix.m12 * density;
+
+        PImage image = atlas.getImage();
+        int[] source = image.pixels;
+        int sourceWidth = image.width;
+        g.loadPixels();
+        int[] target = g.pixels;
+        int targetWidth = g.pixelWidth;
+        int targetHeight = g.pixelHeight;
+        for (int i = 0; i < count; i++) {
+            int sprite = sprites[i];
+            int u = atlas.getX(sprite);
+            int v = atlas.getY(sprite);
+            int w = atlas.getWidth(sprite);
+            int h = atlas.getHeight(sprite);
+            int x0 = Math.round(lefts[i] * scaleX + offsetX);
+            int y0 = Math.round(tops[i] * scaleY + offsetY);
+            int x1 = Math.round((lefts[i] + w) * scaleX + offsetX);
+            int y1 = Math.round((tops[i] + h) * scaleY + offsetY);
+            int fromX = Math.max(0, x0);
+            int fromY = Math.max(0, y0);
+            int toX = Math.min(targetWidth, x1);
+            int toY = Math.min(targetHeight, y1);
+            if (fromX >= toX || fromY >= toY) {
+                continue;
+            }
+
+            // passo no atlas por cada píxel da superfície, em vírgula fixa 16.16
+            int stepX = (int) ((w << 16) / (float) (x1 - x0));
+            int stepY = (int) ((h << 16) / (float) (y1 - y0));
+            for (int y = fromY; y < toY; y++) {
+                int sourceRow = (v + (((y - y0) * stepY) >> 16)) * sourceWidth + u;
+                int targetRow = y * targetWidth;
+                int sx = (fromX - x0) * stepX;
+                for (int x = fromX; x < toX; x++, sx += stepX) {
+                    int color = source[sourceRow + (sx >> 16)];
+                    int alpha = color >>> 24;
+                    if (alpha == 0) {
+                        continue;
+                    }
+                    if (alpha == 255) {
+                        target[targetRow + x] = color;
+                        continue;
+                    }
+                    int under = target[targetRow + x];
+                    int weight = alpha + (alpha >> 7);
+                    int inverse = 256 - weight;
+                    int rb = (((color & 0xFF00FF) * weight + (under & 0xFF00FF) * inverse) >>> 8) & 0xFF00FF;
+                    int gr = (((color & 0x00FF00) * weight + (under & 0x00FF00) * inverse) >>> 8) & 0x00FF00;
+                    int a = weight + (((under >>> 24) * inverse) >>> 8);
+                    target[targetRow + x] = (a << 24) | rb | gr;
+                }
+            }
+        }
+        g.updatePixels();
+        return true;
+    }
+}
\ No newline at end of file
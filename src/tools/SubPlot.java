@@ -21,12 +21,54 @@ public class SubPlot
 
     public float[] getPixelCoord(double x, double y)
     {
-        float[] coord = new float[2];
+        return getPixelCoord(x, y, new float[2]);
+    }
 
-        coord[0] = (float) (bx + mx * (x - window[0]));
-        coord[1] = (float) (by + my * (y - window[2]));
+    /**
+     * Versão sem alocações de getPixelCoord: escreve as coordenadas no buffer dado pelo chamador.
+     * @param x coordenada x no mundo
+     * @param y coordenada y no mundo
+     * @param out buffer com pelo menos 2 posições
+     * @return o próprio buffer out
+     */
+    public float[] getPixelCoord(double x, double y, float[] out)
+    {
+        out[0] = getPixelX(x);
+        out[1] = getPixelY(y);
 
-        return coord;
+        return out;
+    }
+
+    public float getPixelX(double x)
+    {
+        return (float) (bx + mx * (x - window[0]));
+    }
+
+    public float getPixelY(double y)
+    {
+        return (float) (by + my * (y - window[2]));
+    }
+
+    /**
+     * Converte de uma só vez um conjunto de coordenadas do mundo para píxeis. As coordenadas são dadas em arrays
+     * separados (x e y) e o resultado é escrito nos arrays de saída, que podem ser os mesmos da entrada.
+     * @param xs coordenadas x no mundo
+     * @param ys coordenadas y no mundo
+     * @param outX coordenadas x em píxeis
+     * @param outY coordenadas y em píxeis
+     * @param count número de coordenadas a converter
+     */
+    public void getPixelCoords(float[] xs, float[] ys, float[] outX, float[] outY, int count)
+    {
+        float ax = (float) mx;
+        float cx = (float) (bx - mx * window[0]);
+        float ay = (float) my;
+        float cy = (float) (by - my * window[2]);
+
+        for (int i = 0; i < count; i++) {
+            outX[i] = cx + ax * xs[i];
+            outY[i] = cy + ay * ys[i];
+        }
     }
 
     public float[] getPixelCoord(double[] xy)
@@ -86,10 +128,43 @@ public class SubPlot
 
     public float[] getVectorCoord(double dx, double dy)
     {
-        float[] v = new float[2];
-        v[0] = (float)(dx*mx);
-        v[1] = (float)(-dy*my);
-        return v;
+        return getVectorCoord(dx, dy, new float[2]);
+    }
+
+    public float[] getVectorCoord(double dx, double dy, float[] out)
+    {
+        out[0] = getVectorX(dx);
+        out[1] = getVectorY(dy);
+        return out;
+    }
+
+    public float getVectorX(double dx)
+    {
+        return (float)(dx*mx);
+    }
+
+    public float getVectorY(double dy)
+    {
+        return (float)(-dy*my);
+    }
+
+    /**
+     * Converte de uma só vez um conjunto de vetores (deslocamentos) do mundo para píxeis.
+     * @param dxs componentes x no mundo
+     * @param dys componentes y no mundo
+     * @param outX componentes x em píxeis
+     * @param outY componentes y em píxeis
+     * @param count número de vetores a converter
+     */
+    public void getVectorCoords(float[] dxs, float[] dys, float[] outX, float[] outY, int count)
+    {
+        float ax = (float) mx;
+        float ay = (float) -my;
+
+        for (int i = 0; i < count; i++) {
+            outX[i] = ax * dxs[i];
+            outY[i] = ay * dys[i];
+        }
     }
 
     public float[] getVectorCoord(double[] dxdy)
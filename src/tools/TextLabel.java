@@ -0,0 +1,39 @@
+package tools;
+
+/**
+ * Texto com um valor numérico entre um prefixo e um sufixo (por exemplo "S: 42" ou "7 px/s"). O texto só é refeito
+ * quando o valor muda, por isso pedir a mesma etiqueta todos os frames não cria strings novas.
+ */
+public class TextLabel {
+    private final String prefix;
+    private final String suffix;
+    private final StringBuilder text = new StringBuilder(24);
+    private long value;
+    private boolean formatted = false;
+
+    public TextLabel(String prefix, String suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    /**
+     * @param value valor a mostrar
+     * @return texto da etiqueta, válido até à próxima chamada
+     */
+    public CharSequence get(long value) {
+        if (!formatted || value != this.value) {
+            this.value = value;
+            formatted = true;
+            text.setLength(0);
+            text.append(prefix).append(value).append(suffix);
+        }
+        return text;
+    }
+
+    /**
+     * O mesmo que get, mas arredonda o valor para o inteiro mais próximo (como o "%.0f" do String.format).
+     */
+    public CharSequence get(float value) {
+        return get(Math.round(value));
+    }
+}
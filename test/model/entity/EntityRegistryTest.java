@@ -0,0 +1,164 @@
+package model.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntityRegistryTest {
+    private static final int INDEX_MASK = (1 << 20) - 1;
+
+    private static final class TestEntity implements Entity {
+        private int id = NO_ID;
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public void setId(int id) {
+            this.id = id;
+        }
+    }
+
+    private static int slot(int id) {
+        return id & INDEX_MASK;
+    }
+
+    /**
+     * Regista count entidades e remove-as todas, pela ordem em que foram registadas.
+     * @return identificadores que as entidades tinham
+     */
+    private static int[] registerAndRemove(EntityRegistry<TestEntity> registry, int count) {
+        int[] ids = new int[count];
+        List<TestEntity> entities = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TestEntity entity = new TestEntity();
+            ids[i] = registry.register(entity);
+            entities.add(entity);
+        }
+        for (TestEntity entity : entities) {
+            assertTrue(registry.remove(entity));
+        }
+        return ids;
+    }
+
+    @Test
+    void removedIdIsNoLongerAlive() {
+        EntityRegistry<TestEntity> registry = new EntityRegistry<>();
+        TestEntity entity = new TestEntity();
+        int id = registry.register(entity);
+
+        assertTrue(registry.isAlive(id));
+        assertSame(entity, registry.getById(id));
+        assertTrue(registry.removeById(id));
+
+        assertFalse(registry.isAlive(id));
+        assertNull(registry.getById(id));
+        assertFalse(registry.removeById(id));
+        assertEquals(Entity.NO_ID, entity.getId());
+        assertFalse(registry.contains(entity));
+    }
+
+    @Test
+    void freedSlotsAreNotReusedUntilEnoughAreFree() {
+        EntityRegistry<TestEntity> registry = new EntityRegistry<>();
+        int[] ids = registerAndRemove(registry, EntityRegistry.MIN_FREE_SLOTS);
+
+        int id = registry.register(new TestEntity());
+        assertEquals(EntityRegistry.MIN_FREE_SLOTS, slot(id));
+        for (int old : ids) {
+            assertFalse(registry.isAlive(old));
+        }
+    }
+
+    @Test
+    void freedSlotsAreReusedInReleaseOrderWithNewGeneration() {
+        EntityRegistry<TestEntity> registry = new EntityRegistry<>();
+        int[] ids = registerAndRemove(registry, EntityRegistry.MIN_FREE_SLOTS + 3);
+
+        for (int i = 0; i < 3; i++) {
+            int id = registry.register(new TestEntity());
+            assertEquals(slot(ids[i]), slot(id));
+            assertNotEquals(ids[i], id);
+            assertTrue(registry.isAlive(id));
+            assertFalse(registry.isAlive(ids[i]));
+        }
+        // com MIN_FREE_SLOTS livres as slots novas voltam a ser usadas
+        assertEquals(EntityRegistry.MIN_FREE_SLOTS + 3, slot(registry.register(new TestEntity())));
+    }
+
+    /**
+     * Um identificador antigo só pode voltar a parecer vivo quando a geração da sua slot dá a volta, o que com a
+     * reutilização FIFO leva pelo menos 2047 * MIN_FREE_SLOTS remoções.
+     */
+    @Test
+    void staleIdOnlyComesBackAfterGenerationWrapsAround() {
+        EntityRegistry<TestEntity> registry = new EntityRegistry<>();
+        int stale = registerAndRemove(registry, EntityRegistry.MIN_FREE_SLOTS + 1)[0];
+
+        long removals = 0;
+        while (true) {
+            TestEntity entity = new TestEntity();
+            int id = registry.register(entity);
+            if (id == stale) break;
+            assertFalse(registry.isAlive(stale));
+            registry.removeById(id);
+            removals++;
+        }
+        assertTrue(removals >= 2047L * EntityRegistry.MIN_FREE_SLOTS, "voltou ao fim de " + removals);
+    }
+
+    @Test
+    void swapRemoveKeepsIteratorRemoveWorking() {
+        EntityRegistry<TestEntity> registry = new EntityRegistry<>();
+        List<TestEntity> kept = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            TestEntity entity = new TestEntity();
+            registry.add(entity);
+            if (i % 2 == 0) kept.add(entity);
+        }
+        registry.removeIf(entity -> !kept.contains(entity));
+
+        assertEquals(kept.size(), registry.size());
+        for (TestEntity entity : kept) {
+            assertTrue(registry.contains(entity));
+            assertSame(entity, registry.getById(entity.getId()));
+        }
+    }
+
+    @Test
+    void removeMovesLastEntityIntoTheGap() {
+        EntityRegistry<TestEntity> registry = new EntityRegistry<>();
+        TestEntity[] entities = new TestEntity[4];
+        for (int i = 0; i < entities.length; i++) {
+            entities[i] = new TestEntity();
+            registry.add(entities[i]);
+        }
+        registry.remove(entities[1]);
+
+        assertSame(entities[0], registry.get(0));
+        assertSame(entities[3], registry.get(1));
+        assertSame(entities[2], registry.get(2));
+    }
+
+    @Test
+    void positionalWritesAreRejected() {
+        EntityRegistry<TestEntity> registry = new EntityRegistry<>();
+        registry.add(new TestEntity());
+
+        assertThrows(UnsupportedOperationException.class, () -> registry.set(0, new TestEntity()));
+        assertThrows(UnsupportedOperationException.class, () -> registry.add(0, new TestEntity()));
+        assertThrows(UnsupportedOperationException.class, () -> registry.sort(null));
+        assertEquals(1, registry.size());
+    }
+}
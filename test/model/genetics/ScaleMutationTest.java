@@ -0,0 +1,103 @@
+package model.genetics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScaleMutationTest {
+    /**
+     * Mutação de um só genoma, como era feita antes de os genomas serem mutados em lote.
+     */
+    private static boolean mutateOne(Genome genome, RandomGenerator random, float mutationChance,
+                                     float positiveChance, float factor, int minMutations, int maxMutations) {
+        if (random.nextFloat() > mutationChance) {
+            return false;
+        }
+        float scale = random.nextFloat() <= positiveChance ? 1 + factor : 1 - factor;
+        int numberOfMutations = minMutations + random.nextInt(maxMutations - minMutations + 1);
+        for (int n = 0; n < numberOfMutations; n++) {
+            genome.scale(random.nextInt(Trait.COUNT), scale);
+        }
+        return true;
+    }
+
+    private static Genome[] genomes(int count, long seed) {
+        Random random = new Random(seed);
+        Genome[] genomes = new Genome[count];
+        for (int i = 0; i < count; i++) {
+            genomes[i] = new Genome();
+            for (Trait trait : Trait.values()) {
+                genomes[i].set(trait, trait.getMin() + random.nextFloat() * (trait.getMax() - trait.getMin()));
+            }
+        }
+        return genomes;
+    }
+
+    private static GenomeBatch batchOf(Genome[] genomes) {
+        GenomeBatch batch = new GenomeBatch();
+        batch.clear(genomes.length);
+        for (int i = 0; i < genomes.length; i++) {
+            batch.set(i, genomes[i]);
+        }
+        return batch;
+    }
+
+    @Test
+    void batchMatchesOneGenomeAtATime() {
+        for (float positiveChance : new float[]{0f, 0.5f, 1f}) {
+            Genome[] expected = genomes(500, 7);
+            Genome[] actual = genomes(500, 7);
+            RandomGenerator expectedRandom = new SplittableRandom(11);
+            boolean[] expectedChanged = new boolean[expected.length];
+            for (int i = 0; i < expected.length; i++) {
+                expectedChanged[i] = mutateOne(expected[i], expectedRandom, 0.5f, positiveChance, 0.9f, 1, 6);
+            }
+
+            GenomeBatch batch = batchOf(actual);
+            new ScaleMutation(0.5f, positiveChance, 0.9f, 1, 6).apply(batch, new SplittableRandom(11));
+
+            for (int i = 0; i < actual.length; i++) {
+                assertEquals(expectedChanged[i], batch.isChanged(i), "genoma " + i);
+                for (int t = 0; t < Trait.COUNT; t++) {
+                    assertEquals(expected[i].get(t), actual[i].get(t), "genoma " + i + ", característica " + t);
+                }
+            }
+        }
+    }
+
+    @Test
+    void valuesStayWithinTraitLimits() {
+        Genome[] genomes = genomes(200, 3);
+        GenomeBatch batch = batchOf(genomes);
+        ScaleMutation mutation = new ScaleMutation(1f, 1f, 2f, 3, 3);
+        RandomGenerator random = new SplittableRandom(5);
+        for (int round = 0; round < 20; round++) {
+            mutation.apply(batch, random);
+        }
+
+        for (Genome genome : genomes) {
+            for (Trait trait : Trait.values()) {
+                assertEquals(trait.getMax(), genome.get(trait));
+            }
+        }
+    }
+
+    @Test
+    void clearResetsChangedFlagsAndDropsOldGenomes() {
+        GenomeBatch batch = batchOf(genomes(40, 1));
+        ScaleMutation.positive().apply(batch, new SplittableRandom(2));
+        assertTrue(batch.isChanged(0));
+
+        batch.clear(3);
+        assertEquals(3, batch.size());
+        assertFalse(batch.isChanged(0));
+        assertNull(batch.get(3));
+    }
+}
@@ -0,0 +1,127 @@
+package model.lineage;
+
+import model.genetics.Genome;
+import model.genetics.Trait;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LineageStoreTest {
+    // mais registos do que cabem em vários blocos, para que com um só bloco em memória os outros vão para disco
+    private static final int BIRTHS = 100_000;
+
+    private LineageStore store;
+
+    @AfterEach
+    void closeStore() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    /**
+     * Acrescenta BIRTHS registos com pais aleatórios: a maior parte perto do fim (famílias recentes), alguns em
+     * qualquer registo anterior (pais em blocos já escritos em disco) e alguns sem pai.
+     * @return pai de cada registo
+     */
+    private int[] appendRandomBirths(Random random) {
+        Genome genome = new Genome();
+        int[] parents = new int[BIRTHS];
+        for (int id = 0; id < BIRTHS; id++) {
+            int parent;
+            if (id == 0 || random.nextInt(20) == 0) {
+                parent = LineageStore.NO_LINEAGE;
+            } else if (random.nextInt(4) == 0) {
+                parent = random.nextInt(id);
+            } else {
+                parent = Math.max(0, id - 1 - random.nextInt(50));
+            }
+            parents[id] = parent;
+            assertEquals(id, store.append(parent, id, LineageStore.SPECIES_VILLAGER, genome));
+        }
+        return parents;
+    }
+
+    /**
+     * Descendentes encontrados percorrendo todos os registos posteriores: como os pais têm sempre ids menores, um
+     * registo é descendente se o seu pai já o for.
+     */
+    private static int[] bruteForceDescendants(int[] parents, int id) {
+        BitSet family = new BitSet();
+        family.set(id);
+        int[] result = new int[parents.length];
+        int count = 0;
+        for (int child = id + 1; child < parents.length; child++) {
+            if (parents[child] != LineageStore.NO_LINEAGE && family.get(parents[child])) {
+                family.set(child);
+                result[count++] = child;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    @Test
+    void descendantsMatchBruteForceScanWithSpilledChunks() {
+        store = new LineageStore(1);
+        Random random = new Random(3);
+        int[] parents = appendRandomBirths(random);
+
+        for (int query = 0; query < 300; query++) {
+            int id = random.nextInt(BIRTHS);
+            assertArrayEquals(bruteForceDescendants(parents, id), store.descendants(id), "descendentes de " + id);
+            assertEquals(parents[id], store.getParent(id));
+        }
+    }
+
+    @Test
+    void childListsAreNewestFirst() {
+        store = new LineageStore();
+        Genome genome = new Genome();
+        int parent = store.append(LineageStore.NO_LINEAGE, 0, LineageStore.SPECIES_PREDATOR, genome);
+        int first = store.append(parent, 1, LineageStore.SPECIES_PREDATOR, genome);
+        int second = store.append(parent, 2, LineageStore.SPECIES_PREDATOR, genome);
+
+        assertEquals(second, store.getFirstChild(parent));
+        assertEquals(first, store.getNextSibling(second));
+        assertEquals(LineageStore.NO_LINEAGE, store.getNextSibling(first));
+        assertEquals(LineageStore.NO_LINEAGE, store.getFirstChild(first));
+    }
+
+    @Test
+    void ancestorsGoFromParentToRoot() {
+        store = new LineageStore();
+        Genome genome = new Genome();
+        int root = store.append(LineageStore.NO_LINEAGE, 0, LineageStore.SPECIES_VILLAGER, genome);
+        int child = store.append(root, 1, LineageStore.SPECIES_VILLAGER, genome);
+        int grandchild = store.append(child, 2, LineageStore.SPECIES_VILLAGER, genome);
+
+        assertArrayEquals(new int[]{child, root}, store.ancestors(grandchild));
+        assertArrayEquals(new int[0], store.ancestors(root));
+    }
+
+    @Test
+    void recordsKeepTickSpeciesAndGenomeAfterSpilling() {
+        store = new LineageStore(1);
+        Genome genome = new Genome();
+        long tick = (1L << 40) + 12345;
+        for (int id = 0; id < BIRTHS; id++) {
+            genome.set(Trait.AWARENESS, 10 + id % 900);
+            byte species = id % 3 == 0 ? LineageStore.SPECIES_PREDATOR : LineageStore.SPECIES_VILLAGER;
+            store.append(id == 0 ? LineageStore.NO_LINEAGE : id - 1, tick + id, species, genome);
+        }
+
+        for (int id = 0; id < BIRTHS; id += 997) {
+            assertEquals(tick + id, store.getBirthTick(id));
+            assertEquals(id % 3 == 0 ? LineageStore.SPECIES_PREDATOR : LineageStore.SPECIES_VILLAGER,
+                    store.getSpecies(id));
+            assertEquals(10 + id % 900, store.getTrait(id, Trait.AWARENESS));
+            assertEquals(id + 1 < BIRTHS ? id + 1 : LineageStore.NO_LINEAGE, store.getFirstChild(id));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package tools;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class LSystemTest {
+    private static final Rule[] RULES = {new Rule('F', "F[+F]F[-F]FL"), new Rule('G', "F-G")};
+
+    /**
+     * Expansão símbolo a símbolo, como o LSystem fazia antes de as gerações serem guardadas.
+     */
+    private static String expandNaive(String sequence, Rule[] rules) {
+        StringBuilder next = new StringBuilder();
+        for (int i = 0; i < sequence.length(); i++) {
+            char c = sequence.charAt(i);
+            String replace = "" + c;
+            for (Rule rule : rules) {
+                if (c == rule.getSymbol()) {
+                    replace = rule.getString();
+                    break;
+                }
+            }
+            next.append(replace);
+        }
+        return next.toString();
+    }
+
+    @Test
+    void generationsMatchNaiveExpansion() {
+        LSystem lSystem = new LSystem("FG", RULES);
+        String expected = "FG";
+        for (int generation = 0; generation <= 5; generation++) {
+            assertEquals(expected, lSystem.getSequence(generation), "geração " + generation);
+            expected = expandNaive(expected, RULES);
+        }
+    }
+
+    @Test
+    void earlierGenerationsAreKept() {
+        LSystem lSystem = new LSystem("F", RULES);
+        String third = lSystem.getSequence(3);
+        lSystem.getSequence(5);
+
+        assertSame(third, lSystem.getSequence(3));
+        assertEquals(6, lSystem.getGenerationCount());
+    }
+
+    @Test
+    void compileFoldsConsecutiveTurns() {
+        LSystem lSystem = new LSystem("F++-[fL]--", new Rule[0]);
+        int[] expected = {
+                LSystem.OP_DRAW,
+                LSystem.OP_TURN | (1 << 8),
+                LSystem.OP_PUSH,
+                LSystem.OP_MOVE,
+                LSystem.OP_LEAF,
+                LSystem.OP_POP,
+                LSystem.OP_TURN | (-2 << 8),
+        };
+
+        int[] commands = lSystem.getCommands(0);
+        assertArrayEquals(expected, commands);
+        assertEquals(-2, LSystem.operand(commands[6]));
+        assertEquals(LSystem.OP_TURN, LSystem.op(commands[6]));
+    }
+
+    @Test
+    void commandsMatchSequenceOfEachGeneration() {
+        LSystem lSystem = new LSystem("F", RULES);
+        for (int generation = 0; generation <= 4; generation++) {
+            String sequence = lSystem.getSequence(generation);
+            int draws = 0;
+            for (int command : lSystem.getCommands(generation)) {
+                if (LSystem.op(command) == LSystem.OP_DRAW) draws++;
+            }
+            assertEquals(sequence.chars().filter(c -> c == 'F' || c == 'G').count(), draws);
+        }
+    }
+
+    @Test
+    void internSharesInstancesPerRuleSet() {
+        LSystem a = LSystem.intern("F", RULES);
+        LSystem b = LSystem.intern("F", new Rule[]{new Rule('F', "F[+F]F[-F]FL"), new Rule('G', "F-G")});
+        LSystem c = LSystem.intern("G", RULES);
+
+        assertSame(a, b);
+        assertNotSame(a, c);
+    }
+}
@@ -0,0 +1,123 @@
+package tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsChannelTest {
+    private static final int VALUES = 3;
+
+    private static float[] sample(long tick) {
+        return new float[]{tick, tick * 2, -tick};
+    }
+
+    @Test
+    void pollReturnsSamplesInPublishOrder() {
+        MetricsChannel channel = new MetricsChannel(VALUES, 8);
+        MetricsChannel.Cursor cursor = channel.cursorAtStart();
+        float[] out = new float[VALUES];
+
+        assertEquals(-1, channel.poll(cursor, out));
+        for (long tick = 0; tick < 5; tick++) {
+            channel.publish(tick, sample(tick));
+        }
+        for (long tick = 0; tick < 5; tick++) {
+            assertEquals(tick, channel.poll(cursor, out));
+            assertArrayEquals(sample(tick), out);
+        }
+        assertEquals(-1, channel.poll(cursor, out));
+        assertEquals(0, cursor.getLost());
+    }
+
+    @Test
+    void cursorAtEndOnlySeesLaterSamples() {
+        MetricsChannel channel = new MetricsChannel(VALUES, 8);
+        float[] out = new float[VALUES];
+        channel.publish(0, sample(0));
+        MetricsChannel.Cursor cursor = channel.cursorAtEnd();
+
+        assertEquals(-1, channel.poll(cursor, out));
+        channel.publish(1, sample(1));
+        assertEquals(1, channel.poll(cursor, out));
+    }
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(8, new MetricsChannel(VALUES, 5).capacity());
+        assertEquals(8, new MetricsChannel(VALUES, 8).capacity());
+        assertEquals(16, new MetricsChannel(VALUES, 9).capacity());
+    }
+
+    /**
+     * Um leitor que ficou mais do que capacity() amostras para trás salta para a amostra mais antiga que ainda é
+     * segura (a seguir à que a simulação reescreve a seguir) e conta as que perdeu.
+     */
+    @Test
+    void laggingReaderSkipsOverwrittenSamples() {
+        MetricsChannel channel = new MetricsChannel(VALUES, 8);
+        MetricsChannel.Cursor cursor = channel.cursorAtStart();
+        float[] out = new float[VALUES];
+        for (long tick = 0; tick < 20; tick++) {
+            channel.publish(tick, sample(tick));
+        }
+
+        long first = 20 - channel.capacity() + 1;
+        for (long tick = first; tick < 20; tick++) {
+            assertEquals(tick, channel.poll(cursor, out));
+            assertArrayEquals(sample(tick), out);
+        }
+        assertEquals(-1, channel.poll(cursor, out));
+        assertEquals(first, cursor.getLost());
+    }
+
+    @Test
+    void readerExactlyOneBufferBehindLosesOneSample() {
+        MetricsChannel channel = new MetricsChannel(VALUES, 8);
+        MetricsChannel.Cursor cursor = channel.cursorAtStart();
+        float[] out = new float[VALUES];
+        for (long tick = 0; tick < channel.capacity(); tick++) {
+            channel.publish(tick, sample(tick));
+        }
+
+        assertEquals(1, channel.poll(cursor, out));
+        assertEquals(1, cursor.getLost());
+    }
+
+    /**
+     * A simulação publica muito mais depressa do que o leitor lê, por isso o buffer dá a volta a meio de muitas
+     * leituras. Nenhuma amostra devolvida pode misturar valores de ticks diferentes nem vir fora de ordem.
+     */
+    @Test
+    void concurrentOverrunNeverReturnsTornSamples() throws InterruptedException {
+        MetricsChannel channel = new MetricsChannel(8, 16);
+        long samples = 2_000_000;
+        Thread writer = new Thread(() -> {
+            float[] sample = new float[8];
+            for (long tick = 0; tick < samples; tick++) {
+                Arrays.fill(sample, tick % 100_000);
+                channel.publish(tick, sample);
+            }
+        });
+        MetricsChannel.Cursor cursor = channel.cursorAtStart();
+        float[] out = new float[8];
+        long read = 0;
+        long last = -1;
+        writer.start();
+        while (writer.isAlive() || read + cursor.getLost() < samples) {
+            long tick = channel.poll(cursor, out);
+            if (tick < 0) continue;
+            read++;
+            for (float value : out) {
+                assertEquals((float) (tick % 100_000), value, "amostra do tick " + tick + " lida a meio");
+            }
+            assertTrue(tick > last, "tick " + tick + " depois de " + last);
+            last = tick;
+        }
+        writer.join();
+        assertEquals(samples, read + cursor.getLost());
+    }
+}
@@ -0,0 +1,77 @@
+package tools;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObjectPoolTest {
+    private static final class Item implements Poolable {
+        private boolean pooled;
+        private int resets;
+
+        @Override
+        public void reset() {
+            resets++;
+        }
+
+        @Override
+        public boolean isPooled() {
+            return pooled;
+        }
+
+        @Override
+        public void setPooled(boolean pooled) {
+            this.pooled = pooled;
+        }
+    }
+
+    @Test
+    void releasedObjectIsReusedAndReset() {
+        ObjectPool<Item> pool = new ObjectPool<>(4, Item::new);
+        Item item = pool.acquire();
+        assertTrue(pool.release(item));
+
+        assertSame(item, pool.acquire());
+        assertEquals(1, item.resets);
+        assertFalse(item.isPooled());
+        assertEquals(0.5f, pool.getHitRate());
+    }
+
+    @Test
+    void doubleReleaseIsRejected() {
+        ObjectPool<Item> pool = new ObjectPool<>(4, Item::new);
+        Item item = pool.acquire();
+        pool.release(item);
+
+        assertThrows(IllegalStateException.class, () -> pool.release(item));
+        assertEquals(1, pool.getFreeCount());
+        assertSame(item, pool.acquire());
+        assertNotSame(item, pool.acquire());
+    }
+
+    @Test
+    void doubleReleaseOfDroppedObjectIsRejected() {
+        ObjectPool<Item> pool = new ObjectPool<>(1, Item::new);
+        pool.release(pool.acquire());
+        Item dropped = new Item();
+
+        assertFalse(pool.release(dropped));
+        assertThrows(IllegalStateException.class, () -> pool.release(dropped));
+        assertEquals(1, pool.getDropped());
+    }
+
+    @Test
+    void reacquiredObjectCanBeReleasedAgain() {
+        ObjectPool<Item> pool = new ObjectPool<>(4, Item::new);
+        Item item = pool.acquire();
+        pool.release(item);
+        pool.acquire();
+
+        assertTrue(pool.release(item));
+    }
+}
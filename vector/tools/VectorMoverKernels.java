@@ -0,0 +1,63 @@
+package tools;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Versão de MoverKernels com a Vector API. Cada iteração trata FloatVector.SPECIES_PREFERRED elementos (8 floats com
+ * AVX2, 16 com AVX-512) e os elementos que sobram são tratados pela versão escalar. As operações são feitas pela mesma
+ * ordem e sem FMA, por isso os resultados são iguais bit a bit aos da versão escalar.
+ * Esta classe só é carregada por MoverKernels quando o módulo jdk.incubator.vector está presente. Fica fora das
+ * fontes do módulo porque precisa de javac --add-modules jdk.incubator.vector; compila-se à parte, com as classes do
+ * jogo no classpath (ver o README).
+ */
+final class VectorMoverKernels implements MoverKernels.Backend {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void integrate(float[] px, float[] py, float[] vx, float[] vy, float[] fx, float[] fy, float[] mass,
+                          float dt, int count) {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector m = FloatVector.fromArray(SPECIES, mass, i);
+            FloatVector newVx = FloatVector.fromArray(SPECIES, vx, i)
+                    .add(FloatVector.fromArray(SPECIES, fx, i).div(m).mul(dt));
+            FloatVector newVy = FloatVector.fromArray(SPECIES, vy, i)
+                    .add(FloatVector.fromArray(SPECIES, fy, i).div(m).mul(dt));
+            newVx.intoArray(vx, i);
+            newVy.intoArray(vy, i);
+            FloatVector.fromArray(SPECIES, px, i).add(newVx.mul(dt)).intoArray(px, i);
+            FloatVector.fromArray(SPECIES, py, i).add(newVy.mul(dt)).intoArray(py, i);
+        }
+        MoverKernels.integrateRange(px, py, vx, vy, fx, fy, mass, dt, i, count);
+    }
+
+    /**
+     * Compara um vetor de pontos de cada vez com o raio. A comparação dá uma máscara com um bit por ponto e só os
+     * vetores com algum acerto são percorridos para guardar os índices.
+     */
+    @Override
+    public int hitTest(float cx, float cy, float radius, boolean strict, float[] xs, float[] ys, int count,
+                       int[] hits) {
+        float radiusSq = radius * radius;
+        VectorOperators.Comparison inside = strict ? VectorOperators.LT : VectorOperators.LE;
+        int bound = SPECIES.loopBound(count);
+        int hitCount = 0;
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector dx = FloatVector.fromArray(SPECIES, xs, i).sub(cx);
+            FloatVector dy = FloatVector.fromArray(SPECIES, ys, i).sub(cy);
+            VectorMask<Float> hit = dx.mul(dx).add(dy.mul(dy)).compare(inside, radiusSq);
+            if (!hit.anyTrue()) continue;
+            long mask = hit.toLong();
+            while (mask != 0) {
+                hits[hitCount++] = i + Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+            }
+        }
+        return MoverKernels.hitTestRange(cx, cy, radiusSq, strict, xs, ys, i, count, hits, hitCount);
+    }
+}